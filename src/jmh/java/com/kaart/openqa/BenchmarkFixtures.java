@@ -0,0 +1,117 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonWriter;
+
+import org.openstreetmap.josm.data.Preferences;
+import org.openstreetmap.josm.data.preferences.JosmBaseDirectories;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.data.projection.Projections;
+import org.openstreetmap.josm.spi.preferences.Config;
+
+/**
+ * Inputs for the benchmarks. The inputs are built from small recorded responses
+ * by repeating their members with shifted coordinates and new ids. They are
+ * deterministic, so results of different commits can be compared.
+ */
+public final class BenchmarkFixtures {
+    /** The width and height of the area the generated errors are spread over, in degrees */
+    public static final double AREA_SIZE = 0.5;
+    /** The latitude of the south west corner of the generated errors */
+    public static final double MIN_LAT = 39.0;
+    /** The longitude of the south west corner of the generated errors */
+    public static final double MIN_LON = -108.8;
+
+    private BenchmarkFixtures() {
+        // Hide constructor
+    }
+
+    /**
+     * Set up the parts of JOSM needed to create and index primitives
+     */
+    public static void initJosm() {
+        Config.setPreferencesInstance(Preferences.main());
+        Config.setBaseDirectoriesProvider(JosmBaseDirectories.getInstance());
+        ProjectionRegistry.setProjection(Projections.getProjectionByCode("EPSG:3857"));
+    }
+
+    /**
+     * Get a KeepRight GeoJSON export
+     *
+     * @param size The number of features
+     * @return The export
+     */
+    public static byte[] keepRight(int size) {
+        JsonArray template = read("/com/kaart/openqa/keepright.geojson").getJsonArray("features");
+        JsonArrayBuilder features = Json.createArrayBuilder();
+        for (int i = 0; i < size; i++) {
+            JsonObject feature = template.getJsonObject(i % template.size());
+            double[] coordinates = coordinates(i, size);
+            features.add(Json.createObjectBuilder(feature)
+                    .add("geometry", Json.createObjectBuilder(feature.getJsonObject("geometry")).add("coordinates",
+                            Json.createArrayBuilder().add(coordinates[1]).add(coordinates[0])))
+                    .add("properties", Json.createObjectBuilder(feature.getJsonObject("properties"))
+                            .add("error_id", Integer.toString(i + 1))));
+        }
+        return write(Json.createObjectBuilder().add("type", "FeatureCollection").add("features", features).build());
+    }
+
+    /**
+     * Get an Osmose {@code issues} response
+     *
+     * @param size The number of issues
+     * @return The response
+     */
+    public static byte[] osmoseIssues(int size) {
+        JsonArray template = read("/com/kaart/openqa/profiles/osmose/issues.json").getJsonArray("issues");
+        JsonArrayBuilder issues = Json.createArrayBuilder();
+        for (int i = 0; i < size; i++) {
+            double[] coordinates = coordinates(i, size);
+            issues.add(Json.createObjectBuilder(template.getJsonObject(i % template.size()))
+                    .add("id", String.format("00000000-0000-0000-0000-%012d", i)).add("lat", coordinates[0])
+                    .add("lon", coordinates[1]));
+        }
+        return write(Json.createObjectBuilder().add("issues", issues).build());
+    }
+
+    /**
+     * Get the position of a generated error. Errors are spread evenly over a
+     * square grid.
+     *
+     * @param index The index of the error
+     * @param size  The number of errors
+     * @return {@code {lat, lon}}
+     */
+    public static double[] coordinates(int index, int size) {
+        int side = (int) Math.ceil(Math.sqrt(size));
+        double step = AREA_SIZE / side;
+        return new double[] { MIN_LAT + (index / side) * step, MIN_LON + (index % side) * step };
+    }
+
+    private static JsonObject read(String resource) {
+        try (InputStream stream = BenchmarkFixtures.class.getResourceAsStream(resource);
+                JsonReader reader = Json.createReader(stream)) {
+            return reader.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] write(JsonObject object) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonWriter writer = Json.createWriter(out)) {
+            writer.writeObject(object);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,153 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.io.IllegalDataException;
+
+/**
+ * Benchmarks for merging downloaded errors, finding clicked errors and
+ * formatting error descriptions in {@link ErrorLayer}
+ */
+public class ErrorLayerBenchmark {
+    private static final List<Bounds> AREA = Collections.singletonList(new Bounds(BenchmarkFixtures.MIN_LAT,
+            BenchmarkFixtures.MIN_LON, BenchmarkFixtures.MIN_LAT + BenchmarkFixtures.AREA_SIZE,
+            BenchmarkFixtures.MIN_LON + BenchmarkFixtures.AREA_SIZE));
+
+    private static DataSet errors(int size) throws IllegalDataException {
+        return GeoJsonReader.parseDataSet(new ByteArrayInputStream(BenchmarkFixtures.keepRight(size)), null);
+    }
+
+    /**
+     * Errors that are already shown, and the same errors downloaded again
+     */
+    @State(Scope.Benchmark)
+    public static class Refresh {
+        @Param({ "1000", "10000", "50000" })
+        int size;
+
+        DataSet current;
+        DataSet downloaded;
+
+        @Setup
+        public void setup() throws IllegalDataException {
+            BenchmarkFixtures.initJosm();
+            current = errors(size);
+            downloaded = errors(size);
+        }
+    }
+
+    /**
+     * Downloaded errors, and an empty dataset for each invocation to merge them
+     * into
+     */
+    @State(Scope.Benchmark)
+    public static class Initial {
+        @Param({ "1000", "10000", "50000" })
+        int size;
+
+        DataSet current;
+        DataSet downloaded;
+
+        @Setup
+        public void setup() throws IllegalDataException {
+            BenchmarkFixtures.initJosm();
+            downloaded = errors(size);
+        }
+
+        @Setup(Level.Invocation)
+        public void clear() {
+            current = new DataSet();
+        }
+    }
+
+    /**
+     * Errors shown on a map, and points that are clicked on
+     */
+    @State(Scope.Benchmark)
+    public static class Click {
+        @Param({ "1000", "10000", "50000" })
+        int size;
+
+        DataSet errors;
+        NavigatableComponent mapView;
+        List<Point> clicks;
+        int click;
+
+        @Setup
+        public void setup() throws IllegalDataException {
+            BenchmarkFixtures.initJosm();
+            errors = errors(size);
+            mapView = new NavigatableComponent();
+            mapView.setBounds(new Rectangle(1280, 1024));
+            mapView.zoomTo(AREA.get(0));
+            Random random = new Random(42);
+            clicks = new ArrayList<>();
+            for (int i = 0; i < 1024; i++) {
+                clicks.add(new Point(random.nextInt(1280), random.nextInt(1024)));
+            }
+        }
+
+        Point next() {
+            click = (click + 1) % clicks.size();
+            return clicks.get(click);
+        }
+    }
+
+    /**
+     * A long error description
+     */
+    @State(Scope.Benchmark)
+    public static class Description {
+        String text;
+
+        @Setup
+        public void setup() {
+            StringBuilder sb = new StringBuilder("<html>");
+            for (int i = 0; i < 50; i++) {
+                sb.append("This node is very close but not connected to way #").append(i)
+                        .append(". Is it a junction? See <a href=\"https://www.keepright.at\">KeepRight</a>! ")
+                        .append("\u3053\u308c\u306f\u30c6\u30b9\u30c8\u3067\u3059\u3002\u6b21\u306e\u6587\u3002");
+            }
+            text = sb.append("</html>").toString();
+        }
+    }
+
+    @Benchmark
+    public DataSet mergeUnchanged(Refresh state) {
+        ErrorLayer.mergeErrors(state.current, state.downloaded, AREA);
+        return state.current;
+    }
+
+    @Benchmark
+    public DataSet mergeIntoEmpty(Initial state) {
+        ErrorLayer.mergeErrors(state.current, state.downloaded, AREA);
+        return state.current;
+    }
+
+    @Benchmark
+    public List<Node> getClosestNodes(Click state) {
+        return ErrorLayer.getClosestNodes(state.mapView, state.errors, state.next(), 10);
+    }
+
+    @Benchmark
+    public String insertLineBreaks(Description state) {
+        return ErrorLayer.insertLineBreaks(state.text);
+    }
+}
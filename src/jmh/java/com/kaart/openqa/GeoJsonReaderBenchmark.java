@@ -0,0 +1,34 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import java.io.ByteArrayInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.io.IllegalDataException;
+
+/**
+ * Benchmarks for parsing KeepRight exports with {@link GeoJsonReader}
+ */
+@State(Scope.Benchmark)
+public class GeoJsonReaderBenchmark {
+    @Param({ "100", "1000", "10000", "50000" })
+    int size;
+
+    private byte[] export;
+
+    @Setup
+    public void setup() {
+        BenchmarkFixtures.initJosm();
+        export = BenchmarkFixtures.keepRight(size);
+    }
+
+    @Benchmark
+    public DataSet parseDataSet() throws IllegalDataException {
+        return GeoJsonReader.parseDataSet(new ByteArrayInputStream(export), null);
+    }
+}
@@ -0,0 +1,36 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles.osmose;
+
+import java.io.ByteArrayInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstreetmap.josm.data.osm.DataSet;
+
+import com.kaart.openqa.BenchmarkFixtures;
+
+/**
+ * Benchmarks for parsing Osmose {@code issues} responses, as done by
+ * {@link OsmoseInformation#getGeoJsonErrors}
+ */
+@State(Scope.Benchmark)
+public class OsmoseIssuesBenchmark {
+    @Param({ "100", "1000", "10000", "50000" })
+    int size;
+
+    private byte[] issues;
+
+    @Setup
+    public void setup() {
+        BenchmarkFixtures.initJosm();
+        issues = BenchmarkFixtures.osmoseIssues(size);
+    }
+
+    @Benchmark
+    public DataSet parseIssues() {
+        return OsmoseInformation.parseIssues(new ByteArrayInputStream(issues));
+    }
+}
@@ -0,0 +1,233 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * The download times and validators of the cache files in a directory. The
+ * index is read once per directory, and changes are written in batches.
+ * <p>
+ * Each line of the index file holds one cache file, with tab separated
+ * columns: the name of the file (which contains the hash of its URL), the
+ * time it was downloaded or revalidated, its size, the modification time the
+ * server sent and the ETag the server sent.
+ */
+final class CacheIndex {
+    /** The name of the index file in a cache directory */
+    static final String FILE_NAME = "cache.index";
+    private static final String HEADER = "# " + OpenQA.NAME + " cache index 1";
+    /** The time to wait for more changes before the index is written, in seconds */
+    private static final long SAVE_DELAY = 5;
+
+    private static final Map<File, CacheIndex> INDEXES = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService SAVER = Executors.newSingleThreadScheduledExecutor(
+            Utils.newThreadFactory(OpenQA.NAME.toLowerCase() + "-cache-index-%d", Thread.MIN_PRIORITY));
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> INDEXES.values().forEach(CacheIndex::save)));
+    }
+
+    private final File directory;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean dirty;
+
+    /**
+     * What is known about a cache file
+     */
+    static final class Entry {
+        final long time;
+        final long size;
+        final long lastModified;
+        final String etag;
+
+        /**
+         * Create a new entry
+         *
+         * @param time         The time the file was downloaded or revalidated
+         * @param size         The size of the file, in bytes
+         * @param lastModified The modification time the server sent, or 0
+         * @param etag         The ETag the server sent, or {@code null}
+         */
+        Entry(long time, long size, long lastModified, String etag) {
+            this.time = time;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.etag = etag == null || etag.isEmpty() ? null : etag;
+        }
+
+        /**
+         * Get a copy of this entry with another time
+         *
+         * @param newTime The time the file was revalidated
+         * @return The new entry
+         */
+        Entry withTime(long newTime) {
+            return new Entry(newTime, size, lastModified, etag);
+        }
+    }
+
+    private CacheIndex(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the index of a cache directory. It is read the first time it is needed.
+     *
+     * @param directory The cache directory
+     * @return The index
+     */
+    static CacheIndex get(File directory) {
+        return INDEXES.computeIfAbsent(getDirectoryKey(directory), CacheIndex::load);
+    }
+
+    /**
+     * Get the canonical form of a directory, so that different paths to the same
+     * directory share an index
+     *
+     * @param directory The directory
+     * @return The canonical directory
+     */
+    static File getDirectoryKey(File directory) {
+        try {
+            return directory.getCanonicalFile();
+        } catch (IOException e) {
+            Logging.debug(e.getMessage());
+            return directory.getAbsoluteFile();
+        }
+    }
+
+    /**
+     * Get what is known about a cache file
+     *
+     * @param fileName The name of the cache file
+     * @return The entry, or {@code null} if the file is not in the index
+     */
+    synchronized Entry get(String fileName) {
+        return entries.get(fileName);
+    }
+
+    /**
+     * Add or replace the entry of a cache file
+     *
+     * @param fileName The name of the cache file
+     * @param entry    What is known about the file
+     */
+    synchronized void put(String fileName, Entry entry) {
+        entries.put(fileName, entry);
+        changed();
+    }
+
+    /**
+     * Remove the entry of a cache file
+     *
+     * @param fileName The name of the cache file
+     */
+    synchronized void remove(String fileName) {
+        if (entries.remove(fileName) != null) {
+            changed();
+        }
+    }
+
+    private void changed() {
+        if (!dirty) {
+            dirty = true;
+            SAVER.schedule(this::save, SAVE_DELAY, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Write the index if it changed
+     */
+    synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        File file = new File(directory, FILE_NAME);
+        File temporary = new File(directory, FILE_NAME + ".part");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    Entry value = entry.getValue();
+                    writer.write(String.join("\t", entry.getKey(), Long.toString(value.time),
+                            Long.toString(value.size), Long.toString(value.lastModified),
+                            value.etag == null ? "" : value.etag));
+                    writer.newLine();
+                }
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Logging.error(e);
+            Utils.deleteFile(temporary);
+        }
+    }
+
+    private static CacheIndex load(File directory) {
+        CacheIndex index = new CacheIndex(directory);
+        File file = new File(directory, FILE_NAME);
+        if (file.isFile()) {
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] columns = line.split("\t", 5);
+                    if (line.startsWith("#") || columns.length < 5) {
+                        continue;
+                    }
+                    // Files that were deleted on exit or by hand are dropped
+                    if (new File(directory, columns[0]).isFile()) {
+                        index.entries.put(columns[0], new Entry(Long.parseLong(columns[1]),
+                                Long.parseLong(columns[2]), Long.parseLong(columns[3]), columns[4]));
+                    } else {
+                        index.dirty = true;
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                Logging.warn(e);
+                index.entries.clear();
+            }
+        }
+        index.migrate();
+        if (index.dirty) {
+            index.dirty = false;
+            index.changed();
+        }
+        return index;
+    }
+
+    /**
+     * Remove the preferences that older versions kept for every cache file, as
+     * "mirror.&lt;directory&gt;.&lt;url&gt;"
+     */
+    private void migrate() {
+        String prefix = "mirror." + directory.getPath() + ".";
+        List<String> legacyKeys = new ArrayList<>();
+        for (String key : Config.getPref().getKeySet()) {
+            if (key.startsWith(prefix)) {
+                legacyKeys.add(key);
+            }
+        }
+        for (String key : legacyKeys) {
+            Config.getPref().putList(key, null);
+        }
+    }
+}
@@ -1,13 +1,34 @@
 // License: GPL. For details, see LICENSE file.
 package com.kaart.openqa;
 
+import static org.openstreetmap.josm.tools.I18n.tr;
+
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.openstreetmap.josm.data.Version;
 import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.HttpClient;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
 
 /**
  * Downloads a file and caches it on disk in order to reduce network load.
@@ -17,13 +38,26 @@ import org.openstreetmap.josm.spi.preferences.Config;
  * URLs.)
  * <p>
  * The mirrored file is only downloaded if it has been more than 7 days since
- * last download. (Time can be configured.)
+ * last download. (Time can be configured.) Once it is older, HTTP resources
+ * are revalidated with the ETag and modification time that the server sent,
+ * so unchanged resources are not downloaded again.
  * <p>
  * The file content is normally accessed with {@link #getInputStream()}, but you
  * can also get the mirrored copy with {@link #getFile()}.
  */
 public class CachedFile extends org.openstreetmap.josm.io.CachedFile {
+    /** The prefix of the names of cache files */
+    private static final String PREFIX = "mirror_";
+    /** The suffix of the names of compressed cache files */
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final int BUFFER_SIZE = 65536;
+
+    /** The times before which cache files in a directory are stale, by canonical directory */
+    private static final Map<File, Long> EXPIRED = new ConcurrentHashMap<>();
+
     protected boolean deleteOnExit;
+    protected boolean compressed;
+    private final Map<String, String> httpHeaders = new HashMap<>();
 
     /**
      * Constructs a CachedFile object from a given filename, URL or internal
@@ -48,13 +82,28 @@ public class CachedFile extends org.openstreetmap.josm.io.CachedFile {
     }
 
     private void setDefaultHttpHeaders() {
-        String userAgent = "Josm/".concat(Version.getInstance().getVersionString()).concat("(")
+        setHttpHeaders(Collections.singletonMap("User-Agent", getUserAgent()));
+    }
+
+    /**
+     * @return The user agent that the plugin sends with its requests
+     */
+    public static String getUserAgent() {
+        return "Josm/".concat(Version.getInstance().getVersionString()).concat("(")
                 .concat(System.getProperty("os.name")).concat(") OpenQA/").concat(OpenQA.getVersion());
-        super.setHttpHeaders(Collections.singletonMap("User-Agent", userAgent));
+    }
+
+    @Override
+    public CachedFile setHttpHeaders(Map<String, String> headers) {
+        httpHeaders.putAll(headers);
+        super.setHttpHeaders(headers);
+        return this;
     }
 
     /**
-     * Get local file for the requested resource.
+     * Get local file for the requested resource. HTTP resources are downloaded
+     * again once they are older than the maximum age, with a conditional request
+     * if the server sent an ETag or a modification time for the cached copy.
      *
      * @return The local cache file for URLs. If the resource is a local file,
      *         returns just that file.
@@ -65,31 +114,211 @@ public class CachedFile extends org.openstreetmap.josm.io.CachedFile {
     public synchronized File getFile() throws IOException {
         if (initialized)
             return cacheFile;
-        super.getFile();
-        if (deleteOnExit && name != null && name.matches("^(http|ftp)")) {
+        if (!isHttp()) {
+            return super.getFile();
+        }
+        cacheFile = download(new URL(name));
+        initialized = true;
+        if (deleteOnExit) {
             cacheFile.deleteOnExit();
-            String prefKey = getPrefKey(new URL(name), destDir);
-            Config.getPref().putList(prefKey, null);
         }
         return cacheFile;
     }
 
+    @Override
+    public synchronized void clear() throws IOException {
+        if (!isHttp()) {
+            super.clear();
+            return;
+        }
+        File file = getCacheFile(new URL(name));
+        Utils.deleteFile(file);
+        CacheIndex.get(file.getParentFile()).remove(file.getName());
+        initialized = false;
+    }
+
+    /**
+     * Get the content of the resource. Compressed cache files are decompressed
+     * while they are read.
+     *
+     * @return The content
+     * @throws IOException when the resource with the given name could not be
+     *                     retrieved
+     */
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (compressed && isHttp()) {
+            return new GZIPInputStream(Files.newInputStream(getFile().toPath()), BUFFER_SIZE);
+        }
+        return super.getInputStream();
+    }
+
+    private boolean isHttp() {
+        return name != null && name.matches("^https?://.*");
+    }
+
     /**
-     * Get preference key to store the location and age of the cached file. 2
-     * resources that point to the same url, but that are to be stored in different
-     * directories will not share a cache file.
+     * Get the cached copy of a resource, and download or revalidate it if it is
+     * too old
      *
-     * @param url     URL
-     * @param destDir destination directory
-     * @return Preference key
+     * @param url The resource
+     * @return The cached copy
+     * @throws IOException if there is no cached copy and the resource could not
+     *                     be downloaded
      */
-    private static String getPrefKey(URL url, String destDir) {
-        StringBuilder prefKey = new StringBuilder("mirror.");
-        if (destDir != null) {
-            prefKey.append(destDir).append('.');
+    private File download(URL url) throws IOException {
+        File file = getCacheFile(url);
+        CacheIndex index = CacheIndex.get(file.getParentFile());
+        CacheIndex.Entry entry = index.get(file.getName());
+        long now = System.currentTimeMillis();
+        boolean cached = entry != null && file.isFile();
+        if (cached && now - entry.time < TimeUnit.SECONDS.toMillis(getMaxAgeSeconds())
+                && entry.time >= EXPIRED.getOrDefault(CacheIndex.getDirectoryKey(file.getParentFile()), 0L)) {
+            touch(file, now);
+            return file;
+        }
+        HttpClient client = HttpClient.create(url).setHeaders(httpHeaders);
+        client.setHeader("Accept-Encoding", "gzip");
+        if (httpAccept != null) {
+            client.setAccept(httpAccept);
+        }
+        if (cached && entry.etag != null) {
+            client.setHeader("If-None-Match", entry.etag);
+        }
+        if (cached && entry.lastModified > 0) {
+            client.setIfModifiedSince(entry.lastModified);
+        }
+        HttpClient.Response response = null;
+        try {
+            response = client.connect();
+            if (cached && response.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                Logging.debug("304 Not Modified ({0})", url);
+                index.put(file.getName(), entry.withTime(now));
+                touch(file, now);
+                return file;
+            }
+            if (response.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException(tr("The server returned {0} for {1}", response.getResponseCode(), url));
+            }
+            File temporary = File.createTempFile(file.getName(), ".part", file.getParentFile());
+            try (InputStream content = response.getContent()) {
+                if (compressed) {
+                    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary.toPath()),
+                            BUFFER_SIZE)) {
+                        Utils.copyStream(content, out);
+                    }
+                } else {
+                    Files.copy(content, temporary.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporary.toPath());
+            }
+            index.put(file.getName(), new CacheIndex.Entry(now, file.length(),
+                    Math.max(0, response.getLastModified()), response.getHeaderField("ETag")));
+            return file;
+        } catch (IOException e) {
+            if (cached) {
+                Logging.warn(tr("Could not update {0}, using the cached copy: {1}", url, e.getMessage()));
+                return file;
+            }
+            throw e;
+        } finally {
+            if (response != null) {
+                response.disconnect();
+            }
         }
-        prefKey.append(url.toString().replaceAll("%<(.*)>", ""));
-        return prefKey.toString().replace("=", "_");
+    }
+
+    private long getMaxAgeSeconds() {
+        if (maxAge == DEFAULT_MAXTIME || maxAge <= 0) {
+            return Config.getPref().getLong("mirror.maxtime", TimeUnit.DAYS.toSeconds(7));
+        }
+        return maxAge;
+    }
+
+    /**
+     * Get the file that a resource is cached in. 2 resources that point to the
+     * same url, but that are to be stored in different directories will not share
+     * a cache file.
+     *
+     * @param url The resource
+     * @return The file
+     */
+    private File getCacheFile(URL url) {
+        File directory = destDir == null ? Config.getDirs().getCacheDirectory(true) : new File(destDir);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Logging.warn(tr("Could not create the cache directory {0}", directory));
+        }
+        return new File(directory, PREFIX + hash(url.toString()) + (compressed ? COMPRESSED_SUFFIX : ""));
+    }
+
+    private static String hash(String string) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(string.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Mark a cache file as used, for {@link #trim(File, long)}
+     *
+     * @param file The cache file
+     * @param now  The current time
+     */
+    private static void touch(File file, long now) {
+        if (!file.setLastModified(now)) {
+            Logging.debug("Could not update the modification time of {0}", file);
+        }
+    }
+
+    /**
+     * Delete the least recently used cache files in a directory until the rest
+     * fit in a size budget
+     *
+     * @param directory The directory
+     * @param budget    The maximum total size of the cache files, in bytes
+     */
+    public static void trim(File directory, long budget) {
+        CacheIndex index = CacheIndex.get(directory);
+        File[] files = directory.listFiles((dir, fileName) -> fileName.startsWith(PREFIX)
+                && !fileName.endsWith(".part"));
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= budget) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (total <= budget) {
+                break;
+            }
+            total -= file.length();
+            Utils.deleteFile(file);
+            index.remove(file.getName());
+        }
+    }
+
+    /**
+     * Make all cache files in a directory stale. They are revalidated the next
+     * time they are used, so unchanged resources are not downloaded again.
+     *
+     * @param directory The directory
+     */
+    public static void expire(File directory) {
+        EXPIRED.put(CacheIndex.getDirectoryKey(directory), System.currentTimeMillis());
     }
 
     /**
@@ -101,6 +330,17 @@ public class CachedFile extends org.openstreetmap.josm.io.CachedFile {
         deleteOnExit = delete;
     }
 
+    /**
+     * Should the file be stored compressed? Must be called before download.
+     * Compressed files are decompressed by {@link #getInputStream()}, so
+     * {@link #getFile()} should not be read directly.
+     *
+     * @param compressed true to store the file compressed
+     */
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
     /**
      * @return true if the file will be deleted on program exit
      *         {@code File.deleteOnExit()} The file will only be deleted if it is a
@@ -7,6 +7,7 @@ import static org.openstreetmap.josm.tools.I18n.trn;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.event.ActionEvent;
@@ -15,13 +16,17 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import javax.swing.AbstractAction;
@@ -31,12 +36,12 @@ import javax.swing.BoxLayout;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
-import javax.swing.JComponent;
 import javax.swing.JEditorPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JWindow;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.UIManager;
 import javax.swing.plaf.basic.BasicHTML;
 import javax.swing.text.View;
@@ -46,7 +51,9 @@ import org.openstreetmap.josm.actions.mapmode.SelectAction;
 import org.openstreetmap.josm.actions.mapmode.SelectLassoAction;
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.BBox;
 import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.DataSource;
 import org.openstreetmap.josm.data.osm.DataSourceChangeEvent;
 import org.openstreetmap.josm.data.osm.DataSourceListener;
 import org.openstreetmap.josm.data.osm.HighlightUpdateListener;
@@ -55,6 +62,7 @@ import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.MapView;
+import org.openstreetmap.josm.gui.NavigatableComponent;
 import org.openstreetmap.josm.gui.dialogs.LayerListDialog;
 import org.openstreetmap.josm.gui.dialogs.LayerListPopup;
 import org.openstreetmap.josm.gui.layer.AbstractModifiableLayer;
@@ -66,16 +74,17 @@ import org.openstreetmap.josm.gui.layer.LayerManager.LayerRemoveEvent;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.gui.widgets.HtmlPanel;
 import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.ColorHelper;
 import org.openstreetmap.josm.tools.ImageProvider;
 import org.openstreetmap.josm.tools.ImageProvider.ImageSizes;
 import org.openstreetmap.josm.tools.Logging;
-import org.openstreetmap.josm.tools.Utils;
 import org.openstreetmap.josm.tools.bugreport.BugReport;
 import org.openstreetmap.josm.tools.bugreport.ReportedException;
 
+import com.kaart.openqa.profiles.DownloadedErrors;
 import com.kaart.openqa.profiles.GenericInformation;
 
 public class ErrorLayer extends AbstractModifiableLayer
@@ -96,12 +105,39 @@ public class ErrorLayer extends AbstractModifiableLayer
      */
     private static final Pattern SENTENCE_MARKS_EASTERN = Pattern.compile("(\\u3002)([\\p{L}\\p{Punct}])");
 
+    /** The default number of visible errors per source above which errors are clustered */
+    private static final int CLUSTER_THRESHOLD = 1000;
+
+    /** The default number of visible errors per source up to which their additional information is prefetched */
+    private static final int PREFETCH_THRESHOLD = 20;
+
+    /** The time in milliseconds that the view must be still before additional information is prefetched */
+    private static final int PREFETCH_DELAY = 500;
+
+    /** The number of note sizes that are kept */
+    private static final int POPUP_LAYOUT_CACHE_SIZE = 64;
+
+    /** The key that is set on errors that have been marked as fixed or false positive */
+    static final String ACTION_TAKEN = "actionTaken";
+
     HashMap<GenericInformation, DataSet> dataSets = new HashMap<>();
     HashMap<GenericInformation, Boolean> enabledSources = new HashMap<>();
 
-    private Node displayedNode;
     private JScrollPane displayedPanel;
     private JWindow displayedWindow;
+    /** What the note window shows, and what it is being built for */
+    private List<Object> popupKey;
+    private List<Object> pendingPopupKey;
+    private Dimension popupContentSize;
+    /** The sizes of recently shown notes, by maximum size and text */
+    private final Map<String, PopupLayout> popupLayouts = new LinkedHashMap<String, PopupLayout>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PopupLayout> eldest) {
+            return size() > POPUP_LAYOUT_CACHE_SIZE;
+        }
+    };
     private PaintWindow window;
 
     ArrayList<Node> previousNodes;
@@ -112,8 +148,17 @@ public class ErrorLayer extends AbstractModifiableLayer
 
     private boolean updateCanceled = false;
 
+    /** The areas that the errors of each source were downloaded for, with the times they were downloaded */
+    private final Map<GenericInformation, Map<Bounds, Long>> coverage = new ConcurrentHashMap<>();
+    /** The sources whose errors or areas changed since their snapshot was written */
+    private final Set<GenericInformation> unsaved = ConcurrentHashMap.newKeySet();
+
     private final List<DataSet> listeningDataSets = new ArrayList<>();
 
+    /** Prefetches the additional information of the visible errors once the view stops changing */
+    private final Timer prefetchTimer = new Timer(PREFETCH_DELAY, event -> prefetchAdditionalInformation());
+    private final NavigatableComponent.ZoomChangeListener prefetchTrigger = prefetchTimer::restart;
+
     /**
      * Create a new ErrorLayer using a class that extends {@code GenericInformation}
      *
@@ -142,7 +187,10 @@ public class ErrorLayer extends AbstractModifiableLayer
                 if (!(obj instanceof GenericInformation))
                     continue;
                 GenericInformation info = (GenericInformation) obj;
-                dataSets.put(info, new DataSet());
+                // Show the errors of the last session until they are updated
+                Map<Bounds, Long> covered = new ConcurrentHashMap<>();
+                dataSets.put(info, ErrorSnapshot.read(getSnapshotFile(info), covered));
+                coverage.put(info, covered);
                 enabledSources.put(info, true);
             } catch (InstantiationException | IllegalAccessException | IllegalArgumentException
                     | InvocationTargetException | NoSuchMethodException | SecurityException e) {
@@ -163,8 +211,20 @@ public class ErrorLayer extends AbstractModifiableLayer
      * @param monitor The monitor to show updates with. Can be null.
      */
     public void update(ProgressMonitor monitor) {
+        update(monitor, null);
+    }
+
+    /**
+     * Update the backing information data stores for some areas
+     *
+     * @param monitor The monitor to show updates with. Can be null.
+     * @param areas   The areas to update, or {@code null} to update the data
+     *                source bounds of all data layers
+     */
+    public void update(ProgressMonitor monitor, List<Bounds> areas) {
         if (monitor == null)
             monitor = NullProgressMonitor.INSTANCE;
+        updateCanceled = false;
         List<OsmDataLayer> dataLayers = MainApplication.getLayerManager().getLayersOfType(OsmDataLayer.class);
         ProgressMonitor progressMonitor = monitor.createSubTaskMonitor(0, false);
         progressMonitor.beginTask(tr("Updating {0} layers", OpenQA.NAME));
@@ -173,32 +233,166 @@ public class ErrorLayer extends AbstractModifiableLayer
                 progressMonitor.cancel();
                 break;
             }
-            for (OsmDataLayer layer : dataLayers) {
-                if (updateCanceled)
-                    break;
-                DataSet ds = entry.getValue();
-                GenericInformation type = entry.getKey();
+            GenericInformation type = entry.getKey();
+            DataSet ds = entry.getValue();
+            if (ds == null) {
+                ds = new DataSet();
+                ds.addHighlightUpdateListener(this);
+                dataSets.put(type, ds);
+            }
+            boolean complete = true;
+            if (areas == null) {
+                for (OsmDataLayer layer : dataLayers) {
+                    if (updateCanceled)
+                        break;
+                    progressMonitor.indeterminateSubTask(tr("Updating {0}", type.getLayerName()));
+                    complete = updateBounds(type, ds, type.getBounds(layer.getDataSet(), progressMonitor),
+                            progressMonitor);
+                    if (!complete)
+                        break;
+                }
+            } else {
                 progressMonitor.indeterminateSubTask(tr("Updating {0}", type.getLayerName()));
-                if (ds == null || ds.allPrimitives().isEmpty()) {
-                    ds = type.getErrors(layer.getDataSet(), progressMonitor);
-                } else {
-                    DataSet mergeFrom = type.getErrors(layer.getDataSet(), progressMonitor);
-                    for (OsmPrimitive osm : mergeFrom.allPrimitives()) {
-                        OsmPrimitive osm2 = ds.getPrimitiveById(osm.getPrimitiveId());
-                        mergeFrom.removePrimitive(osm.getPrimitiveId());
-                        ds.removePrimitive(osm2);
-                        if (osm2 != null && osm2.isModified()) {
-                            Logging.info("Primitive found");
-                            osm = osm2;
+                complete = updateBounds(type, ds, type.getBounds(areas), progressMonitor);
+            }
+            if (complete && !updateCanceled && unsaved.remove(type)) {
+                saveSnapshot(type, ds);
+            }
+        }
+        progressMonitor.finishTask();
+        invalidate();
+        // New errors may be visible without the view changing
+        GuiHelper.runInEDT(prefetchTimer::restart);
+    }
+
+    /**
+     * Download the errors of a source in some areas, and merge them into the
+     * errors that are shown
+     *
+     * @param type            The source
+     * @param ds              The errors of the source that are shown
+     * @param bounds          The areas, as returned by
+     *                        {@link GenericInformation#getBounds}
+     * @param progressMonitor The monitor to show updates with
+     * @return {@code false} if the update was cancelled
+     */
+    private boolean updateBounds(GenericInformation type, DataSet ds, List<Bounds> bounds,
+            ProgressMonitor progressMonitor) {
+        DownloadedErrors errors = type.getErrors(bounds, progressMonitor);
+        // A partial download would remove errors that still exist
+        if (updateCanceled || progressMonitor.isCanceled()) {
+            type.markStale(bounds);
+            return false;
+        }
+        // Errors are only removed where the download succeeded
+        boolean changed = mergeErrors(ds, errors.getDataSet(), errors.getCompleteBounds());
+        Map<Bounds, Long> covered = getCoverage(type);
+        long now = System.currentTimeMillis();
+        for (Bounds bound : errors.getCompleteBounds()) {
+            changed |= covered.put(bound, now) == null;
+        }
+        if (changed) {
+            unsaved.add(type);
+        }
+        return true;
+    }
+
+    private Map<Bounds, Long> getCoverage(GenericInformation type) {
+        return coverage.computeIfAbsent(type, key -> new ConcurrentHashMap<>());
+    }
+
+    private File getSnapshotFile(GenericInformation type) {
+        return new File(new File(cacheDir, "snapshots"), type.getName().toLowerCase() + ".snapshot");
+    }
+
+    private void saveSnapshot(GenericInformation type, DataSet ds) {
+        try {
+            ErrorSnapshot.write(getSnapshotFile(type), ds, getCoverage(type));
+        } catch (IOException e) {
+            Logging.error(e);
+        }
+    }
+
+    /**
+     * Merge freshly downloaded errors into the errors that are shown. Only real
+     * changes are applied, and all of them are sent to listeners as one event.
+     * <ul>
+     * <li>Errors that are new are added</li>
+     * <li>Errors in {@code bounds} that were not downloaded again are removed,
+     * unless an action was taken on them</li>
+     * <li>Errors with changed tags or positions are updated in place, unless an
+     * action was taken on them</li>
+     * </ul>
+     *
+     * @param ds     The errors that are currently shown
+     * @param errors The errors that were downloaded
+     * @param bounds The areas that {@code errors} were downloaded for
+     * @return {@code true} if any change was applied
+     */
+    static boolean mergeErrors(DataSet ds, DataSet errors, List<Bounds> bounds) {
+        Map<String, Node> downloaded = new HashMap<>();
+        for (Node node : errors.getNodes()) {
+            String id = node.get(GenericInformation.ERROR_ID);
+            if (id != null && node.isLatLonKnown()) {
+                downloaded.put(id, node);
+            }
+        }
+        boolean changed = false;
+        ds.beginUpdate();
+        try {
+            for (Node current : new ArrayList<>(ds.getNodes())) {
+                String id = current.get(GenericInformation.ERROR_ID);
+                if (id == null)
+                    continue;
+                Node node = downloaded.remove(id);
+                if (current.hasKey(ACTION_TAKEN)) {
+                    continue;
+                }
+                if (node == null) {
+                    if (current.isLatLonKnown() && isInBounds(current, bounds)) {
+                        ds.removePrimitive(current);
+                        changed = true;
+                    }
+                    continue;
+                }
+                if (!node.getCoor().equalsEpsilon(current.getCoor())) {
+                    current.setCoor(node.getCoor());
+                    changed = true;
+                }
+                // Tags that are gone upstream are removed, the additional information is kept
+                Map<String, String> keys = node.getKeys();
+                String additional = current.get(GenericInformation.ADDITIONAL_INFORMATION);
+                if (additional != null) {
+                    for (String key : additional.split(";", -1)) {
+                        if (current.hasKey(key)) {
+                            keys.put(key, current.get(key));
                         }
-                        ds.addPrimitive(osm);
                     }
                 }
-                dataSets.put(type, ds);
+                if (!keys.equals(current.getKeys())) {
+                    current.setKeys(keys);
+                    changed = true;
+                }
             }
+            for (Node node : downloaded.values()) {
+                if (ds.getPrimitiveById(node) == null) {
+                    ds.addPrimitive(new Node(node));
+                    changed = true;
+                }
+            }
+        } finally {
+            ds.endUpdate();
         }
-        progressMonitor.finishTask();
-        invalidate();
+        return changed;
+    }
+
+    private static boolean isInBounds(Node node, List<Bounds> bounds) {
+        for (Bounds bound : bounds) {
+            if (bound.contains(node.getCoor())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -206,9 +400,34 @@ public class ErrorLayer extends AbstractModifiableLayer
      */
     public void hookUpMapViewer() {
         MainApplication.getMap().mapView.addMouseListener(this);
+        prefetchTimer.setRepeats(false);
+        NavigatableComponent.addZoomChangeListener(prefetchTrigger);
         addListeners();
     }
 
+    /**
+     * Prefetch the additional information of the visible errors of each source,
+     * if there are only a few of them
+     */
+    private void prefetchAdditionalInformation() {
+        if (!MainApplication.isDisplayingMapView()) {
+            return;
+        }
+        Bounds view = MainApplication.getMap().mapView.getRealBounds();
+        BBox area = new BBox(view.getMin(), view.getMax());
+        int threshold = Config.getPref().getInt(OpenQA.PREF_PREFIX.concat("prefetch-threshold"), PREFETCH_THRESHOLD);
+        for (Map.Entry<GenericInformation, DataSet> entry : dataSets.entrySet()) {
+            GenericInformation type = entry.getKey();
+            if (entry.getValue() == null || Boolean.FALSE.equals(enabledSources.get(type))) {
+                continue;
+            }
+            List<Node> visible = entry.getValue().searchNodes(area);
+            if (visible.size() <= threshold) {
+                type.prefetchAdditionalInformation(visible);
+            }
+        }
+    }
+
     private void addListeners() {
         for (DataSet ds : dataSets.values()) {
             ds.addHighlightUpdateListener(this);
@@ -218,6 +437,8 @@ public class ErrorLayer extends AbstractModifiableLayer
     @Override
     public synchronized void destroy() {
         MainApplication.getMap().mapView.removeMouseListener(this);
+        NavigatableComponent.removeZoomChangeListener(prefetchTrigger);
+        prefetchTimer.stop();
         for (DataSet ds : dataSets.values()) {
             try {
                 if (ds == null)
@@ -265,10 +486,11 @@ public class ErrorLayer extends AbstractModifiableLayer
     @Override
     public void paint(Graphics2D g, MapView mv, Bounds bbox) {
         if (window == null) {
-            window = new PaintWindow(g, mv);
+            window = new PaintWindow(g, mv, bbox);
         } else {
             window.setGraphics2d(g);
             window.setMapView(mv);
+            window.setBounds(bbox);
         }
         window.run();
     }
@@ -276,10 +498,12 @@ public class ErrorLayer extends AbstractModifiableLayer
     private class PaintWindow implements Runnable {
         Graphics2D g;
         MapView mv;
+        Bounds bounds;
 
-        public PaintWindow(Graphics2D g, MapView mv) {
+        public PaintWindow(Graphics2D g, MapView mv, Bounds bounds) {
             this.g = g;
             this.mv = mv;
+            this.bounds = bounds;
         }
 
         public void setGraphics2d(Graphics2D g) {
@@ -290,6 +514,10 @@ public class ErrorLayer extends AbstractModifiableLayer
             this.mv = mv;
         }
 
+        public void setBounds(Bounds bounds) {
+            this.bounds = bounds;
+        }
+
         @Override
         public void run() {
             for (GenericInformation type : dataSets.keySet()) {
@@ -304,17 +532,89 @@ public class ErrorLayer extends AbstractModifiableLayer
             DataSet ds = dataSets.get(type);
             if (ds == null)
                 return;
-            for (Node node : ds.getNodes()) {
-                Point p = mv.getPoint(node.getCoor());
-                String error = type.getError(node);
-                ImageIcon icon = type.getIcon(error, size);
-                int width = icon.getIconWidth();
-                int height = icon.getIconHeight();
-                g.drawImage(icon.getImage(), p.x - (width / 2), p.y - (height / 2), MainApplication.getMap().mapView);
+            List<Node> visible = ds.searchNodes(getVisibleArea(size));
+            if (visible.size() > Config.getPref().getInt(OpenQA.PREF_PREFIX.concat("cluster-threshold"),
+                    CLUSTER_THRESHOLD)) {
+                paintClusters(type, visible, size);
+            } else {
+                for (Node node : visible) {
+                    paintError(type, type.getError(node), mv.getPoint(node.getCoor()), size);
+                }
             }
             createNodeWindow(g, mv, size);
         }
 
+        /**
+         * Get the area that needs to be painted. This is the painted bounds, grown
+         * by an icon so that icons whose centers are just outside are still drawn.
+         *
+         * @param size The size of the icons
+         * @return The area to search for nodes in
+         */
+        private BBox getVisibleArea(ImageSizes size) {
+            Bounds area = bounds == null ? mv.getRealBounds() : bounds;
+            Point min = mv.getPoint(area.getMin());
+            Point max = mv.getPoint(area.getMax());
+            int xPadding = size.getAdjustedWidth();
+            int yPadding = size.getAdjustedHeight();
+            return new BBox(mv.getLatLon(min.x - xPadding, min.y + yPadding),
+                    mv.getLatLon(max.x + xPadding, max.y - yPadding));
+        }
+
+        private void paintError(GenericInformation type, String error, Point p, ImageSizes size) {
+            ImageIcon icon = type.getIcon(error, size);
+            int width = icon.getIconWidth();
+            int height = icon.getIconHeight();
+            g.drawImage(icon.getImage(), p.x - (width / 2), p.y - (height / 2), MainApplication.getMap().mapView);
+        }
+
+        /**
+         * Paint nodes aggregated on a screen grid with cells the size of an icon.
+         * Each cell is drawn once, with the icon of its first node and the number
+         * of nodes in the cell.
+         *
+         * @param type    The source of the nodes
+         * @param visible The nodes to paint
+         * @param size    The size of the icons
+         */
+        private void paintClusters(GenericInformation type, List<Node> visible, ImageSizes size) {
+            final int cellWidth = size.getAdjustedWidth();
+            final int cellHeight = size.getAdjustedHeight();
+            Map<Long, Cluster> clusters = new HashMap<>();
+            for (Node node : visible) {
+                Point p = mv.getPoint(node.getCoor());
+                long column = Math.floorDiv(p.x, cellWidth);
+                long row = Math.floorDiv(p.y, cellHeight);
+                long cell = (column << 32) | (row & 0xffffffffL);
+                Cluster cluster = clusters.get(cell);
+                if (cluster == null) {
+                    clusters.put(cell, new Cluster(type.getError(node), p));
+                } else {
+                    cluster.add(p);
+                }
+            }
+            Font font = g.getFont();
+            Color color = g.getColor();
+            g.setFont(font.deriveFont(Font.BOLD));
+            for (Cluster cluster : clusters.values()) {
+                Point p = cluster.getCenter();
+                paintError(type, cluster.error, p, size);
+                if (cluster.count > 1) {
+                    String count = Integer.toString(cluster.count);
+                    int textWidth = g.getFontMetrics().stringWidth(count);
+                    int textHeight = g.getFontMetrics().getAscent();
+                    int x = p.x + (cellWidth / 2) - textWidth;
+                    int y = p.y + (cellHeight / 2);
+                    g.setColor(Color.WHITE);
+                    g.fillRect(x - 1, y - textHeight, textWidth + 2, textHeight + 1);
+                    g.setColor(Color.BLACK);
+                    g.drawString(count, x, y);
+                }
+            }
+            g.setFont(font);
+            g.setColor(color);
+        }
+
         private void createNodeWindow(Graphics2D g, MapView mv, ImageSizes size) {
             HashMap<GenericInformation, ArrayList<Node>> selectedErrors = new HashMap<>();
 
@@ -344,7 +644,9 @@ public class ErrorLayer extends AbstractModifiableLayer
         }
 
         /**
-         * Create the note window
+         * Paint the selection and show the note window next to it. The window is
+         * only built again when the selected errors or their notes change;
+         * otherwise it is only moved.
          *
          * @param g              The {@code Graphics2D} object that will be the note
          *                       background
@@ -376,37 +678,66 @@ public class ErrorLayer extends AbstractModifiableLayer
             int xr = p.x + (iconWidth / 2) + 5;
             int yb = p.y - iconHeight - 1;
             int yt = p.y + (iconHeight / 2) + 2;
-            Point pTooltip;
-            JPanel interiorPanel = new JPanel();
-            displayedPanel = new JScrollPane(interiorPanel);
-            displayedPanel.getVerticalScrollBar().setUnitIncrement(30);
-            interiorPanel.setLayout(new BoxLayout(interiorPanel, BoxLayout.Y_AXIS));
 
-            if (displayedWindow == null) {
-                displayedWindow = new JWindow(MainApplication.getMainFrame());
-                displayedWindow.setAutoRequestFocus(false);
-                displayedWindow.add(displayedPanel);
-                // Forward mouse wheel scroll event to MapMover
-                displayedWindow.addMouseWheelListener(e -> mv.getMapMover()
-                        .mouseWheelMoved((MouseWheelEvent) SwingUtilities.convertMouseEvent(displayedWindow, e, mv)));
+            List<Object> key = getPopupKey(selectedErrors);
+            if (displayedWindow != null && key.equals(popupKey)) {
+                placePopup(mv, p, xl, xr, yt, yb);
+            } else if (!key.equals(pendingPopupKey)) {
+                // Building the window lays out HTML, so it is done after painting
+                pendingPopupKey = key;
+                SwingUtilities.invokeLater(() -> {
+                    if (key.equals(pendingPopupKey)) {
+                        buildPopup(mv, selectedErrors, key);
+                        invalidate();
+                    }
+                });
             }
-            for (Map.Entry<GenericInformation, DataSet> entry : dataSets.entrySet()) {
-                DataSet temporaryDataSet = entry.getValue();
-                GenericInformation type = entry.getKey();
-                if (temporaryDataSet == null)
-                    continue;
-                for (OsmPrimitive osmPrimitive : temporaryDataSet.getSelected()) {
-                    if (!(osmPrimitive instanceof Node))
-                        continue;
-                    Node selectedNode = (Node) osmPrimitive;
-                    String text = type.getNodeToolTip(selectedNode);
+            lastClick = currentClick;
+        }
 
-                    HtmlPanel htmlPanel = new HtmlPanel(text);
+        /**
+         * Get what the note window is built from for the selected errors. The
+         * notes are only built when this changes.
+         *
+         * @param selectedErrors The selected errors
+         * @return The errors and their tags, including the actions taken on them
+         */
+        private List<Object> getPopupKey(Map<GenericInformation, ArrayList<Node>> selectedErrors) {
+            List<Object> key = new ArrayList<>();
+            for (ArrayList<Node> nodes : selectedErrors.values()) {
+                for (Node node : nodes) {
+                    key.add(node);
+                    key.add(node.getKeys());
+                }
+            }
+            return key;
+        }
+
+        /**
+         * Build the note window for the selected errors
+         *
+         * @param mv             The {@code MapView} object that we are drawing on
+         * @param selectedErrors The selected errors
+         * @param key            What the window shows, see {@link #getPopupKey}
+         */
+        private void buildPopup(MapView mv, Map<GenericInformation, ArrayList<Node>> selectedErrors,
+                List<Object> key) {
+            pendingPopupKey = null;
+            // Notes that are at most this wide fit on the wider side of any icon
+            int maxWidth = (int) (0.45 * mv.getWidth());
+            int maxHeight = (int) (0.45 * mv.getHeight());
+            JPanel interiorPanel = new JPanel();
+            interiorPanel.setLayout(new BoxLayout(interiorPanel, BoxLayout.Y_AXIS));
+            for (Map.Entry<GenericInformation, ArrayList<Node>> entry : selectedErrors.entrySet()) {
+                GenericInformation type = entry.getKey();
+                for (Node selectedNode : entry.getValue()) {
+                    HtmlPanel htmlPanel = new HtmlPanel();
                     htmlPanel.setBackground(UIManager.getColor("ToolTip.background"));
                     htmlPanel.setForeground(UIManager.getColor("ToolTip.foreground"));
                     htmlPanel.setFont(UIManager.getFont("ToolTip.font"));
                     htmlPanel.setBorder(BorderFactory.createLineBorder(Color.black));
                     htmlPanel.enableClickableHyperlinks();
+                    layOut(htmlPanel, type.getNodeToolTip(selectedNode), maxWidth, maxHeight);
                     JPanel tPanel = new JPanel();
                     tPanel.setLayout(new BoxLayout(tPanel, BoxLayout.Y_AXIS));
                     tPanel.add(htmlPanel);
@@ -426,88 +757,138 @@ public class ErrorLayer extends AbstractModifiableLayer
                 }
             }
 
-            pTooltip = fixPanelSizeAndLocation(mv, interiorPanel, xl, xr, yt, yb);
-
-            Dimension d = displayedPanel.getPreferredSize();
-            d.setSize(d.getWidth(), Math.min(d.getHeight(), 450));
-
-            int topMaxHeight = (int) (0.95 * yt);
-            int bottomMaxHeight = (int) (0.95 * mv.getHeight() - yb);
-            int maxHeight = Math.max(topMaxHeight, bottomMaxHeight);
-            d.setSize(d.getWidth() + 20, Math.min(d.getHeight(), maxHeight));
-            displayedPanel.setPreferredSize(d);
+            if (displayedWindow == null) {
+                displayedWindow = new JWindow(MainApplication.getMainFrame());
+                displayedWindow.setAutoRequestFocus(false);
+                // Forward mouse wheel scroll event to MapMover
+                displayedWindow.addMouseWheelListener(e -> mv.getMapMover()
+                        .mouseWheelMoved((MouseWheelEvent) SwingUtilities.convertMouseEvent(displayedWindow, e, mv)));
+            } else {
+                displayedWindow.getContentPane().removeAll();
+            }
+            displayedPanel = new JScrollPane(interiorPanel);
+            displayedPanel.getVerticalScrollBar().setUnitIncrement(30);
+            displayedWindow.add(displayedPanel);
+            popupContentSize = interiorPanel.getPreferredSize();
+            popupKey = key;
+        }
 
-            displayedWindow.pack();
-            displayedWindow.setLocation(pTooltip);
-            displayedWindow.setVisible(mv.contains(p));
-            if (!mv.contains(p))
-                hideNodeWindow();
-            lastClick = currentClick;
+        /**
+         * Set the text of a note, and limit its size. The sizes are cached, so
+         * that the HTML does not need to be measured again.
+         *
+         * @param htmlPanel The panel of the note
+         * @param text      The note
+         * @param maxWidth  The maximum width of the note
+         * @param maxHeight The maximum height of the note
+         */
+        private void layOut(HtmlPanel htmlPanel, String text, int maxWidth, int maxHeight) {
+            String cacheKey = maxWidth + "x" + maxHeight + ":" + text;
+            PopupLayout layout = popupLayouts.get(cacheKey);
+            JEditorPane pane = htmlPanel.getEditorPane();
+            if (layout != null) {
+                htmlPanel.setText(layout.text);
+                pane.setPreferredSize(new Dimension(layout.size));
+                return;
+            }
+            String finalText = text;
+            htmlPanel.setText(finalText);
+            Dimension d = pane.getPreferredSize();
+            if ((d.width > maxWidth || d.height > maxHeight)
+                    && Config.getPref().getBoolean("note.text.break-on-sentence-mark", true)) {
+                // To make sure long notes are displayed correctly
+                finalText = insertLineBreaks(pane.getText());
+                htmlPanel.setText(finalText);
+            }
+            // If still too large, enforce maximum size
+            d = pane.getPreferredSize();
+            if (d.width > maxWidth || d.height > maxHeight) {
+                View v = (View) pane.getClientProperty(BasicHTML.propertyKey);
+                if (v == null) {
+                    BasicHTML.updateRenderer(pane, pane.getText());
+                    v = (View) pane.getClientProperty(BasicHTML.propertyKey);
+                }
+                if (v != null) {
+                    v.setSize(maxWidth, 0);
+                    int w = (int) Math.ceil(v.getPreferredSpan(View.X_AXIS));
+                    int h = (int) Math.ceil(v.getPreferredSpan(View.Y_AXIS)) + 10;
+                    pane.setPreferredSize(new Dimension(w, h));
+                }
+            }
+            Dimension daction = htmlPanel.getPreferredSize();
+            d = pane.getPreferredSize();
+            d.setSize(Math.max(d.getWidth(), daction.getWidth()), Math.max(d.getHeight(), daction.getHeight()));
+            pane.setPreferredSize(d);
+            popupLayouts.put(cacheKey, new PopupLayout(finalText, d));
         }
 
         /**
-         * Get the location of the note panel
+         * Move the note window next to the selection
          *
-         * @param mv    {@code MapView} that is being drawn on
-         * @param panel The JPanel we are drawing
-         * @param xl    The left side of the icon
-         * @param xr    The right side of the icon
-         * @param yt    The top of the icon
-         * @param yb    The bottom of the icon
-         * @return The point at which we are drawing the note panel
+         * @param mv The {@code MapView} that is being drawn on
+         * @param p  The center of the selection
+         * @param xl The left side of the icon
+         * @param xr The right side of the icon
+         * @param yt The top of the icon
+         * @param yb The bottom of the icon
          */
-        private Point fixPanelSizeAndLocation(MapView mv, JComponent panel, int xl, int xr, int yt, int yb) {
+        private void placePopup(MapView mv, Point p, int xl, int xr, int yt, int yb) {
             int leftMaxWidth = (int) (0.95 * xl);
             int rightMaxWidth = (int) (0.95 * mv.getWidth() - xr);
             int topMaxHeight = (int) (0.95 * yt);
             int bottomMaxHeight = (int) (0.95 * mv.getHeight() - yb);
-            int maxWidth = Math.max(leftMaxWidth, rightMaxWidth);
             int maxHeight = Math.max(topMaxHeight, bottomMaxHeight);
-            for (Component sComponent : panel.getComponents()) {
-                if (sComponent instanceof JPanel) {
-                    JPanel tPanel = (JPanel) sComponent;
-                    for (Component component : tPanel.getComponents()) {
-                        if (component instanceof HtmlPanel) {
-                            HtmlPanel htmlPanel = (HtmlPanel) component;
-                            JEditorPane pane = htmlPanel.getEditorPane();
-                            Dimension d = pane.getPreferredSize();
-
-                            if ((d.width > maxWidth || d.height > maxHeight)
-                                    && Config.getPref().getBoolean("note.text.break-on-sentence-mark", true)) {
-                                // To make sure long notes are displayed correctly
-                                htmlPanel.setText(insertLineBreaks(pane.getText()));
-                            }
-                            // If still too large, enforce maximum size
-                            d = pane.getPreferredSize();
-
-                            if (d.width > maxWidth || d.height > maxHeight) {
-                                View v = (View) pane.getClientProperty(BasicHTML.propertyKey);
-                                if (v == null) {
-                                    BasicHTML.updateRenderer(pane, pane.getText());
-                                    v = (View) pane.getClientProperty(BasicHTML.propertyKey);
-                                }
-                                if (v != null) {
-                                    v.setSize(maxWidth, 0);
-                                    int w = (int) Math.ceil(v.getPreferredSpan(View.X_AXIS));
-                                    int h = (int) Math.ceil(v.getPreferredSpan(View.Y_AXIS)) + 10;
-                                    pane.setPreferredSize(new Dimension(w, h));
-                                }
-                            }
-                            // htmlPanel.setPreferredSize(pane.getPreferredSize());
-                            Dimension daction = htmlPanel.getPreferredSize();
-                            d = pane.getPreferredSize();
-                            d.setSize(Math.max(d.getWidth(), daction.getWidth()),
-                                    Math.max(d.getHeight(), daction.getHeight()));
-                            pane.setPreferredSize(d);
-                        }
-                    }
-                }
+            Dimension d = popupContentSize;
+            Dimension size = new Dimension(d.width + 20, Math.min(Math.min(d.height, 450), maxHeight));
+            if (!size.equals(displayedPanel.getPreferredSize())) {
+                displayedPanel.setPreferredSize(size);
+                displayedWindow.pack();
             }
-            Dimension d = panel.getPreferredSize();
             // place tooltip on left or right side of icon, based on its width
             Point screenloc = mv.getLocationOnScreen();
-            return new Point(screenloc.x + (d.width > rightMaxWidth && d.width <= leftMaxWidth ? xl - d.width : xr),
+            displayedWindow.setLocation(
+                    screenloc.x + (d.width > rightMaxWidth && d.width <= leftMaxWidth ? xl - d.width : xr),
                     screenloc.y + (d.height > bottomMaxHeight && d.height <= topMaxHeight ? yt - d.height - 10 : yb));
+            // Keep the window while the selection is scrolled out of view
+            displayedWindow.setVisible(mv.contains(p));
+        }
+    }
+
+    /**
+     * The text and size of a note after it was fitted into the note window
+     */
+    private static class PopupLayout {
+        final String text;
+        final Dimension size;
+
+        PopupLayout(String text, Dimension size) {
+            this.text = text;
+            this.size = new Dimension(size);
+        }
+    }
+
+    /**
+     * Errors that are painted as a single icon
+     */
+    private static class Cluster {
+        final String error;
+        int count;
+        long x;
+        long y;
+
+        Cluster(String error, Point p) {
+            this.error = error;
+            add(p);
+        }
+
+        void add(Point p) {
+            count++;
+            x += p.x;
+            y += p.y;
+        }
+
+        Point getCenter() {
+            return new Point((int) (x / count), (int) (y / count));
         }
     }
 
@@ -523,8 +904,9 @@ public class ErrorLayer extends AbstractModifiableLayer
             displayedWindow.dispose();
             displayedWindow = null;
             displayedPanel = null;
-            displayedNode = null;
         }
+        popupKey = null;
+        pendingPopupKey = null;
         invalidate();
     }
 
@@ -556,18 +938,13 @@ public class ErrorLayer extends AbstractModifiableLayer
          */
         private HashMap<GenericInformation, ArrayList<Node>> getClosestNode(Point mousePoint, double snapDistance) {
             HashMap<GenericInformation, ArrayList<Node>> closestNodes = new HashMap<>();
+            MapView mapView = MainApplication.getMap().mapView;
             for (Entry<GenericInformation, DataSet> entry : dataSets.entrySet()) {
                 GenericInformation type = entry.getKey();
                 DataSet ds = entry.getValue();
                 if (ds == null)
                     continue;
-                ArrayList<Node> closestNode = new ArrayList<>();
-                for (Node node : ds.getNodes()) {
-                    Point notePoint = MainApplication.getMap().mapView.getPoint(node.getBBox().getCenter());
-                    if (mousePoint.distance(notePoint) < snapDistance) {
-                        closestNode.add(node);
-                    }
-                }
+                ArrayList<Node> closestNode = getClosestNodes(mapView, ds, mousePoint, snapDistance);
                 if (!closestNode.isEmpty()) {
                     closestNodes.put(type, closestNode);
                 }
@@ -577,15 +954,12 @@ public class ErrorLayer extends AbstractModifiableLayer
 
         private void getAdditionalInformation() {
             for (Entry<GenericInformation, DataSet> entry : dataSets.entrySet()) {
-                boolean hasAdditionalInformation = true;
                 DataSet ds = entry.getValue();
                 GenericInformation type = entry.getKey();
                 if (ds == null)
                     continue;
                 for (Node node : ds.getSelectedNodes()) {
-                    hasAdditionalInformation = type.cacheAdditionalInformation(node);
-                    if (!hasAdditionalInformation)
-                        break;
+                    type.cacheAdditionalInformation(node, ErrorLayer.this::invalidate);
                 }
             }
         }
@@ -607,17 +981,9 @@ public class ErrorLayer extends AbstractModifiableLayer
                     }
                 }
             }
-            boolean gotNode = false;
-            if (displayedNode != null) {
-                for (DataSet ds : dataSets.values()) {
-                    if (ds != null && ds.containsNode(displayedNode)) {
-                        gotNode = true;
-                        break;
-                    }
-                }
-            }
             getAdditionalInformation();
-            if (!gotNode) {
+            // The note window is kept for a new selection, and rebuilt when it is painted
+            if (closestNode.isEmpty()) {
                 hideNodeWindow();
             } else {
                 invalidate();
@@ -671,17 +1037,20 @@ public class ErrorLayer extends AbstractModifiableLayer
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            File directory = new File(cacheDir, GenericInformation.DATA_SUB_DIR);
-            Utils.deleteDirectory(directory);
-            directory.mkdirs();
+            // Keep the files, so that unchanged data is revalidated instead of downloaded again
+            CachedFile.expire(new File(cacheDir, GenericInformation.DATA_SUB_DIR));
             for (Entry<GenericInformation, DataSet> entry : dataSets.entrySet()) {
+                entry.getKey().markStale();
+                // The snapshot only keeps the areas that are downloaded again
+                coverage.remove(entry.getKey());
+                unsaved.add(entry.getKey());
                 DataSet ds = entry.getValue();
                 if (ds == null) {
                     continue;
                 }
                 DataSet temporaryDataSet = new DataSet();
                 for (OsmPrimitive osmPrimitive : ds.allPrimitives()) {
-                    if (osmPrimitive.hasKey("actionTaken")) {
+                    if (osmPrimitive.hasKey(ACTION_TAKEN)) {
                         ds.removePrimitive(osmPrimitive);
                         temporaryDataSet.addPrimitive(osmPrimitive);
                     }
@@ -695,6 +1064,30 @@ public class ErrorLayer extends AbstractModifiableLayer
 
     }
 
+    /**
+     * Get the nodes of a dataset that are close to a point on the screen
+     *
+     * @param nc           The component the point is on
+     * @param ds           The dataset to look in
+     * @param mousePoint   The point on the screen
+     * @param snapDistance The maximum distance in pixels
+     * @return The nodes closer than {@code snapDistance} to {@code mousePoint}
+     */
+    static ArrayList<Node> getClosestNodes(NavigatableComponent nc, DataSet ds, Point mousePoint,
+            double snapDistance) {
+        // Only look at nodes in the snap area, using the spatial index of the dataset
+        BBox searchArea = new BBox(nc.getLatLon(mousePoint.getX() - snapDistance, mousePoint.getY() - snapDistance),
+                nc.getLatLon(mousePoint.getX() + snapDistance, mousePoint.getY() + snapDistance));
+        ArrayList<Node> closestNode = new ArrayList<>();
+        for (Node node : ds.searchNodes(searchArea)) {
+            Point notePoint = nc.getPoint(node.getCoor());
+            if (mousePoint.distance(notePoint) < snapDistance) {
+                closestNode.add(node);
+            }
+        }
+        return closestNode;
+    }
+
     /**
      * Inserts HTML line breaks ({@code <br>
      * } at the end of each sentence mark (period, interrogation mark, exclamation
@@ -793,21 +1186,15 @@ public class ErrorLayer extends AbstractModifiableLayer
         // Do nothing
     }
 
+    /**
+     * Repaint the layer when the highlights of its errors change. Errors whose
+     * action was taken are picked up through the change events of their
+     * dataset, so nothing needs to be scanned here.
+     */
     @Override
     public void highlightUpdated(HighlightUpdateEvent e) {
-        for (OsmPrimitive osmPrimitive : e.getDataSet().allPrimitives()) {
-            if (osmPrimitive instanceof Node
-                    && (osmPrimitive.hasKey("actionTaken") || "false".equals(osmPrimitive.get("actionTaken")))) {
-                Node node = (Node) osmPrimitive;
-                for (Entry<GenericInformation, DataSet> entry : dataSets.entrySet()) {
-                    if (!entry.getValue().containsNode(node))
-                        continue;
-                    entry.getKey().getNodeToolTip(node);
-                    if (!osmPrimitive.hasKey("actionTaken")) {
-                        osmPrimitive.put("actionTaken", "true");
-                    }
-                }
-            }
+        if (dataSets.containsValue(e.getDataSet())) {
+            invalidate();
         }
     }
 
@@ -840,7 +1227,14 @@ public class ErrorLayer extends AbstractModifiableLayer
 
     @Override
     public void dataSourceChange(DataSourceChangeEvent event) {
-        OpenQALayerChangeListener.updateOpenQALayers(cacheDir);
+        // Only the new areas need errors, the others are up to date
+        List<Bounds> added = new ArrayList<>();
+        for (DataSource source : event.getAdded()) {
+            added.add(source.bounds);
+        }
+        if (!added.isEmpty()) {
+            OpenQALayerChangeListener.updateOpenQALayers(cacheDir, added);
+        }
     }
 
 }
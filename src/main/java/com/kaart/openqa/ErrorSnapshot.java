@@ -0,0 +1,269 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataIntegrityProblemException;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.tools.Logging;
+
+import com.kaart.openqa.profiles.GenericInformation;
+
+/**
+ * Stores the errors of a source in a compact binary file, so that they can be
+ * shown right away in the next session. Only errors in areas that were
+ * downloaded within {@link GenericInformation#MAX_AGE} are kept, so errors that
+ * are not confirmed by a download expire with their area. The file is laid out
+ * in columns:
+ * <ol>
+ * <li>A header: magic number, format version, number of errors</li>
+ * <li>The covered areas, with the time they were downloaded</li>
+ * <li>A dictionary of all tag keys and values</li>
+ * <li>The OSM ids, latitudes and longitudes (in 1e-7 degrees) and tag counts
+ * of all errors</li>
+ * <li>The tags of all errors, as pairs of dictionary indexes</li>
+ * </ol>
+ * Snapshots are read into memory at once. They are not memory mapped, since a
+ * mapped file can't be replaced on some systems while the mapping is alive.
+ */
+final class ErrorSnapshot {
+    private static final int MAGIC = 0x4f514131; // OQA1
+    private static final int VERSION = 2;
+    private static final double PRECISION = 1e7;
+    private static final long MAX_AGE = GenericInformation.MAX_AGE * 1000;
+    /** Covered areas spanning more cells than this are checked for every error */
+    private static final int MAX_CELLS_PER_AREA = 64;
+
+    private ErrorSnapshot() {
+        // Hide constructor
+    }
+
+    /**
+     * Write the errors of a dataset that are in areas that were downloaded
+     * recently
+     *
+     * @param file    The file to write to. It is replaced once it is complete.
+     * @param ds      The errors
+     * @param covered The areas that the errors were downloaded for, with the
+     *                times they were downloaded. Expired areas are removed.
+     * @throws IOException if the file could not be written
+     */
+    static void write(File file, DataSet ds, Map<Bounds, Long> covered) throws IOException {
+        expire(covered);
+        Coverage coverage = new Coverage(covered.keySet());
+        List<Node> nodes = new ArrayList<>();
+        for (Node node : ds.getNodes()) {
+            if (!node.isDeleted() && node.isLatLonKnown() && coverage.contains(node.getCoor())) {
+                nodes.add(node);
+            }
+        }
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (Node node : nodes) {
+            for (Map.Entry<String, String> tag : node.getKeys().entrySet()) {
+                dictionary.putIfAbsent(tag.getKey(), dictionary.size());
+                dictionary.putIfAbsent(tag.getValue(), dictionary.size());
+            }
+        }
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        File temporary = File.createTempFile(file.getName(), ".part", directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary.toPath())))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(nodes.size());
+                out.writeInt(covered.size());
+                for (Map.Entry<Bounds, Long> area : covered.entrySet()) {
+                    out.writeDouble(area.getKey().getMinLat());
+                    out.writeDouble(area.getKey().getMinLon());
+                    out.writeDouble(area.getKey().getMaxLat());
+                    out.writeDouble(area.getKey().getMaxLon());
+                    out.writeLong(area.getValue());
+                }
+                out.writeInt(dictionary.size());
+                for (String string : dictionary.keySet()) {
+                    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                for (Node node : nodes) {
+                    out.writeLong(node.isNew() ? 0 : node.getId());
+                }
+                for (Node node : nodes) {
+                    out.writeInt((int) Math.round(node.lat() * PRECISION));
+                }
+                for (Node node : nodes) {
+                    out.writeInt((int) Math.round(node.lon() * PRECISION));
+                }
+                for (Node node : nodes) {
+                    out.writeInt(node.getNumKeys());
+                }
+                for (Node node : nodes) {
+                    for (Map.Entry<String, String> tag : node.getKeys().entrySet()) {
+                        out.writeInt(dictionary.get(tag.getKey()));
+                        out.writeInt(dictionary.get(tag.getValue()));
+                    }
+                }
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+    }
+
+    /**
+     * Read the errors that were written with {@link #write(File, DataSet, Map)}.
+     * Errors in areas that have expired since are dropped.
+     *
+     * @param file    The file to read
+     * @param covered The map to add the areas that have not expired to
+     * @return The errors, or an empty dataset if the file does not exist or can't
+     *         be read
+     */
+    static DataSet read(File file, Map<Bounds, Long> covered) {
+        DataSet ds = new DataSet();
+        if (!file.isFile()) {
+            return ds;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                Logging.debug("Ignoring {0}, it was written in a different format", file);
+                return ds;
+            }
+            int count = buffer.getInt();
+            Map<Bounds, Long> areas = new HashMap<>();
+            for (int i = buffer.getInt(); i > 0; i--) {
+                areas.put(new Bounds(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble()),
+                        buffer.getLong());
+            }
+            expire(areas);
+            Coverage coverage = new Coverage(areas.keySet());
+            String[] dictionary = new String[buffer.getInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            long[] ids = new long[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = buffer.getLong();
+            }
+            Node[] nodes = new Node[count];
+            for (int i = 0; i < count; i++) {
+                nodes[i] = new Node();
+                if (ids[i] > 0) {
+                    nodes[i].setOsmId(ids[i], 1);
+                }
+            }
+            double[] lats = new double[count];
+            for (int i = 0; i < count; i++) {
+                lats[i] = buffer.getInt() / PRECISION;
+            }
+            for (int i = 0; i < count; i++) {
+                nodes[i].setCoor(new LatLon(lats[i], buffer.getInt() / PRECISION));
+            }
+            int[] tagCounts = new int[count];
+            for (int i = 0; i < count; i++) {
+                tagCounts[i] = buffer.getInt();
+            }
+            ds.beginUpdate();
+            try {
+                for (int i = 0; i < count; i++) {
+                    Map<String, String> tags = new HashMap<>(tagCounts[i] * 2);
+                    for (int j = 0; j < tagCounts[i]; j++) {
+                        tags.put(dictionary[buffer.getInt()], dictionary[buffer.getInt()]);
+                    }
+                    if (coverage.contains(nodes[i].getCoor())) {
+                        nodes[i].setKeys(tags);
+                        ds.addPrimitive(nodes[i]);
+                    }
+                }
+            } finally {
+                ds.endUpdate();
+            }
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                | DataIntegrityProblemException e) {
+            Logging.debug(e.getMessage());
+            return new DataSet();
+        }
+        covered.putAll(areas);
+        return ds;
+    }
+
+    private static void expire(Map<Bounds, Long> covered) {
+        long now = System.currentTimeMillis();
+        covered.values().removeIf(time -> now - time >= MAX_AGE);
+    }
+
+    /**
+     * The covered areas, binned in cells of {@link GenericInformation#TILE_SIZE}
+     * degrees, so that only the areas near an error are checked
+     */
+    private static final class Coverage {
+        private final Map<Long, List<Bounds>> cells = new HashMap<>();
+        private final List<Bounds> large = new ArrayList<>();
+
+        Coverage(Collection<Bounds> areas) {
+            for (Bounds area : areas) {
+                int minX = index(area.getMinLon());
+                int maxX = index(area.getMaxLon());
+                int minY = index(area.getMinLat());
+                int maxY = index(area.getMaxLat());
+                if ((long) (maxX - minX + 1) * (maxY - minY + 1) > MAX_CELLS_PER_AREA) {
+                    large.add(area);
+                    continue;
+                }
+                for (int x = minX; x <= maxX; x++) {
+                    for (int y = minY; y <= maxY; y++) {
+                        cells.computeIfAbsent(key(x, y), k -> new ArrayList<>()).add(area);
+                    }
+                }
+            }
+        }
+
+        boolean contains(LatLon coor) {
+            List<Bounds> cell = cells.get(key(index(coor.lon()), index(coor.lat())));
+            return contains(cell, coor) || contains(large, coor);
+        }
+
+        private static boolean contains(List<Bounds> areas, LatLon coor) {
+            if (areas != null) {
+                for (Bounds area : areas) {
+                    if (area.contains(coor)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static int index(double coordinate) {
+            return (int) Math.floor(coordinate / GenericInformation.TILE_SIZE);
+        }
+
+        private static long key(int x, int y) {
+            return ((long) x << 32) | (y & 0xffffffffL);
+        }
+    }
+}
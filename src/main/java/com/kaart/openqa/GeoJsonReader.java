@@ -15,14 +15,12 @@ import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.tools.Logging;
 
 import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonObject;
-import javax.json.JsonString;
-import javax.json.JsonStructure;
-import javax.json.JsonValue;
 import javax.json.stream.JsonParser;
 import javax.json.stream.JsonParser.Event;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -34,11 +32,16 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 /**
  * Reader that reads GeoJSON files. See https://tools.ietf.org/html/rfc7946 for
  * more information.
+ * <p>
+ * The reader is driven by {@link JsonParser} events. Members of a
+ * {@code FeatureCollection} are added to the {@link DataSet} as soon as each
+ * feature has been read, so only one feature is held in memory at a time.
  */
 public class GeoJsonReader extends AbstractReader {
 
     private static final String COORDINATES = "coordinates";
     private static final String FEATURES = "features";
+    private static final String GEOMETRIES = "geometries";
     private static final String PROPERTIES = "properties";
     private static final String GEOMETRY = "geometry";
     private static final String TYPE = "type";
@@ -56,16 +59,20 @@ public class GeoJsonReader extends AbstractReader {
         while (parser.hasNext()) {
             Event event = parser.next();
             if (event == Event.START_OBJECT) {
-                parseRoot(parser.getObject());
+                parseRoot(parseObject());
             }
         }
         parser.close();
     }
 
-    private void parseRoot(final JsonObject object) {
-        switch (object.getString(TYPE)) {
+    private void parseRoot(final GeoJsonObject object) {
+        if (object.type == null) {
+            parseUnknown(object);
+            return;
+        }
+        switch (object.type) {
         case "FeatureCollection":
-            parseFeatureCollection(object.getJsonArray(FEATURES));
+            // Features have already been added while streaming
             break;
         case "Feature":
             parseFeature(object);
@@ -78,107 +85,226 @@ public class GeoJsonReader extends AbstractReader {
         }
     }
 
-    private void parseFeatureCollection(final JsonArray features) {
-        for (JsonValue feature : features) {
-            if (feature instanceof JsonObject) {
-                JsonObject item = (JsonObject) feature;
-                parseFeature(item);
+    /**
+     * Read the members of the current object. The {@code START_OBJECT} event must
+     * already have been consumed. The members of a {@code features} array are
+     * parsed and added to the dataset immediately instead of being kept.
+     *
+     * @return The members of the object that are needed to build primitives
+     */
+    private GeoJsonObject parseObject() {
+        final GeoJsonObject object = new GeoJsonObject();
+        while (parser.hasNext()) {
+            Event event = parser.next();
+            if (event == Event.END_OBJECT) {
+                break;
+            }
+            if (event != Event.KEY_NAME) {
+                continue;
+            }
+            final String key = parser.getString();
+            final Event value = parser.next();
+            if (TYPE.equals(key) && value == Event.VALUE_STRING) {
+                object.type = parser.getString();
+            } else if (FEATURES.equals(key) && value == Event.START_ARRAY) {
+                parseFeatureCollection();
+            } else if (GEOMETRY.equals(key) && value == Event.START_OBJECT) {
+                object.geometry = parseObject();
+            } else if (PROPERTIES.equals(key) && value == Event.START_OBJECT) {
+                object.properties = getTags();
+            } else if (COORDINATES.equals(key) && value == Event.START_ARRAY) {
+                object.coordinates = parseCoordinates();
+            } else if (GEOMETRIES.equals(key) && value == Event.START_ARRAY) {
+                object.geometries = parseGeometries();
+            } else {
+                skipValue(value);
+            }
+        }
+        return object;
+    }
+
+    private void parseFeatureCollection() {
+        while (parser.hasNext()) {
+            Event event = parser.next();
+            if (event == Event.END_ARRAY) {
+                break;
+            } else if (event == Event.START_OBJECT) {
+                parseFeature(parseObject());
+            } else {
+                skipValue(event);
+            }
+        }
+    }
+
+    private List<GeoJsonObject> parseGeometries() {
+        final List<GeoJsonObject> geometries = new ArrayList<>();
+        while (parser.hasNext()) {
+            Event event = parser.next();
+            if (event == Event.END_ARRAY) {
+                break;
+            } else if (event == Event.START_OBJECT) {
+                geometries.add(parseObject());
+            } else {
+                skipValue(event);
             }
         }
+        return geometries;
     }
 
-    private void parseFeature(final JsonObject feature) {
-        JsonObject geometry = feature.getJsonObject(GEOMETRY);
-        parseGeometry(feature, geometry);
+    /**
+     * Read a (possibly nested) coordinate array. The {@code START_ARRAY} event
+     * must already have been consumed.
+     *
+     * @return The coordinates
+     */
+    private Coordinates parseCoordinates() {
+        double[] position = new double[2];
+        int size = 0;
+        List<Coordinates> children = null;
+        while (parser.hasNext()) {
+            Event event = parser.next();
+            if (event == Event.END_ARRAY) {
+                break;
+            } else if (event == Event.VALUE_NUMBER) {
+                if (size == position.length) {
+                    position = Arrays.copyOf(position, size + 1);
+                }
+                position[size++] = parser.getBigDecimal().doubleValue();
+            } else if (event == Event.START_ARRAY) {
+                if (children == null) {
+                    children = new ArrayList<>();
+                }
+                children.add(parseCoordinates());
+            } else {
+                skipValue(event);
+            }
+        }
+        if (size > 0) {
+            return new Coordinates(Arrays.copyOf(position, size), null);
+        }
+        return new Coordinates(null, children == null ? Collections.<Coordinates>emptyList() : children);
     }
 
-    private void parseGeometryCollection(final JsonObject feature, final JsonObject geometry) {
-        JsonArray geometries = geometry.getJsonArray("geometries");
-        for (JsonValue jsonValue : geometries) {
-            parseGeometry(feature, jsonValue.asJsonObject());
+    /**
+     * Skip a value. If the value is an object or an array, everything up to the
+     * matching end event is consumed.
+     *
+     * @param event The event that started the value
+     */
+    private void skipValue(final Event event) {
+        if (event != Event.START_OBJECT && event != Event.START_ARRAY) {
+            return;
+        }
+        int depth = 1;
+        while (depth > 0 && parser.hasNext()) {
+            Event next = parser.next();
+            if (next == Event.START_OBJECT || next == Event.START_ARRAY) {
+                depth++;
+            } else if (next == Event.END_OBJECT || next == Event.END_ARRAY) {
+                depth--;
+            }
         }
     }
 
-    private void parseGeometry(final JsonObject feature, final JsonObject geometry) {
-        switch (geometry.getString(TYPE)) {
+    private void parseFeature(final GeoJsonObject feature) {
+        if (feature.geometry == null) {
+            return;
+        }
+        final Map<String, String> tags = feature.properties == null ? new TreeMap<>() : feature.properties;
+        parseGeometry(tags, feature.geometry);
+    }
+
+    private void parseGeometryCollection(final Map<String, String> tags, final GeoJsonObject geometry) {
+        if (geometry.geometries == null) {
+            return;
+        }
+        for (GeoJsonObject member : geometry.geometries) {
+            parseGeometry(tags, member);
+        }
+    }
+
+    private void parseGeometry(final Map<String, String> tags, final GeoJsonObject geometry) {
+        if (geometry.type == null || (geometry.coordinates == null && geometry.geometries == null)) {
+            parseUnknown(geometry);
+            return;
+        }
+        switch (geometry.type) {
         case "Point":
-            parsePoint(feature, geometry.getJsonArray(COORDINATES));
+            parsePoint(tags, geometry.coordinates);
             break;
         case "MultiPoint":
-            parseMultiPoint(feature, geometry);
+            parseMultiPoint(tags, geometry.coordinates);
             break;
         case "LineString":
-            parseLineString(feature, geometry.getJsonArray(COORDINATES));
+            parseLineString(tags, geometry.coordinates);
             break;
         case "MultiLineString":
-            parseMultiLineString(feature, geometry);
+            parseMultiLineString(tags, geometry.coordinates);
             break;
         case "Polygon":
-            parsePolygon(feature, geometry.getJsonArray(COORDINATES));
+            parsePolygon(tags, geometry.coordinates);
             break;
         case "MultiPolygon":
-            parseMultiPolygon(feature, geometry);
+            parseMultiPolygon(tags, geometry.coordinates);
             break;
         case "GeometryCollection":
-            parseGeometryCollection(feature, geometry);
+            parseGeometryCollection(tags, geometry);
             break;
         default:
             parseUnknown(geometry);
         }
     }
 
-    private void parsePoint(final JsonObject feature, final JsonArray coordinates) {
-        double lat = coordinates.getJsonNumber(1).doubleValue();
-        double lon = coordinates.getJsonNumber(0).doubleValue();
-        Node node = createNode(lat, lon);
-        fillTagsFromFeature(feature, node);
+    private void parsePoint(final Map<String, String> tags, final Coordinates coordinates) {
+        if (coordinates == null || !coordinates.isPosition()) {
+            return;
+        }
+        Node node = createNode(coordinates.lat(), coordinates.lon());
+        fillTagsFromFeature(tags, node);
     }
 
-    private void parseMultiPoint(final JsonObject feature, final JsonObject geometry) {
-        JsonArray coordinates = geometry.getJsonArray(COORDINATES);
-        for (JsonValue coordinate : coordinates) {
-            parsePoint(feature, coordinate.asJsonArray());
+    private void parseMultiPoint(final Map<String, String> tags, final Coordinates coordinates) {
+        for (Coordinates coordinate : coordinates.getChildren()) {
+            parsePoint(tags, coordinate);
         }
     }
 
-    private void parseLineString(final JsonObject feature, final JsonArray coordinates) {
-        if (coordinates.isEmpty()) {
+    private void parseLineString(final Map<String, String> tags, final Coordinates coordinates) {
+        if (coordinates.getChildren().isEmpty()) {
             return;
         }
-        createWay(coordinates, false).ifPresent(way -> fillTagsFromFeature(feature, way));
+        createWay(coordinates, false).ifPresent(way -> fillTagsFromFeature(tags, way));
     }
 
-    private void parseMultiLineString(final JsonObject feature, final JsonObject geometry) {
-        JsonArray coordinates = geometry.getJsonArray(COORDINATES);
-        for (JsonValue coordinate : coordinates) {
-            parseLineString(feature, coordinate.asJsonArray());
+    private void parseMultiLineString(final Map<String, String> tags, final Coordinates coordinates) {
+        for (Coordinates coordinate : coordinates.getChildren()) {
+            parseLineString(tags, coordinate);
         }
     }
 
-    private void parsePolygon(final JsonObject feature, final JsonArray coordinates) {
-        if (coordinates.size() == 1) {
-            createWay(coordinates.getJsonArray(0), true).ifPresent(way -> fillTagsFromFeature(feature, way));
-        } else if (coordinates.size() > 1) {
+    private void parsePolygon(final Map<String, String> tags, final Coordinates coordinates) {
+        final List<Coordinates> rings = coordinates.getChildren();
+        if (rings.size() == 1) {
+            createWay(rings.get(0), true).ifPresent(way -> fillTagsFromFeature(tags, way));
+        } else if (rings.size() > 1) {
             // create multipolygon
             final Relation multipolygon = new Relation();
             multipolygon.put(TYPE, "multipolygon");
-            createWay(coordinates.getJsonArray(0), true)
-                    .ifPresent(way -> multipolygon.addMember(new RelationMember("outer", way)));
+            createWay(rings.get(0), true).ifPresent(way -> multipolygon.addMember(new RelationMember("outer", way)));
 
-            for (JsonValue interiorRing : coordinates.subList(1, coordinates.size())) {
-                createWay(interiorRing.asJsonArray(), true)
+            for (Coordinates interiorRing : rings.subList(1, rings.size())) {
+                createWay(interiorRing, true)
                         .ifPresent(way -> multipolygon.addMember(new RelationMember("inner", way)));
             }
 
-            fillTagsFromFeature(feature, multipolygon);
+            fillTagsFromFeature(tags, multipolygon);
             getDataSet().addPrimitive(multipolygon);
         }
     }
 
-    private void parseMultiPolygon(final JsonObject feature, final JsonObject geometry) {
-        JsonArray coordinates = geometry.getJsonArray(COORDINATES);
-        for (JsonValue coordinate : coordinates) {
-            parsePolygon(feature, coordinate.asJsonArray());
+    private void parseMultiPolygon(final Map<String, String> tags, final Coordinates coordinates) {
+        for (Coordinates coordinate : coordinates.getChildren()) {
+            parsePolygon(tags, coordinate);
         }
     }
 
@@ -188,15 +314,16 @@ public class GeoJsonReader extends AbstractReader {
         return node;
     }
 
-    private Optional<Way> createWay(final JsonArray coordinates, final boolean autoClose) {
-        if (coordinates.isEmpty()) {
+    private Optional<Way> createWay(final Coordinates coordinates, final boolean autoClose) {
+        if (coordinates.getChildren().isEmpty()) {
             return Optional.empty();
         }
 
-        final List<LatLon> latlons = coordinates.stream().map(coordinate -> {
-            final JsonArray jsonValues = coordinate.asJsonArray();
-            return new LatLon(jsonValues.getJsonNumber(1).doubleValue(), jsonValues.getJsonNumber(0).doubleValue());
-        }).collect(Collectors.toList());
+        final List<LatLon> latlons = coordinates.getChildren().stream().filter(Coordinates::isPosition)
+                .map(coordinate -> new LatLon(coordinate.lat(), coordinate.lon())).collect(Collectors.toList());
+        if (latlons.isEmpty()) {
+            return Optional.empty();
+        }
 
         final int size = latlons.size();
         final boolean doAutoclose;
@@ -224,35 +351,52 @@ public class GeoJsonReader extends AbstractReader {
         return Optional.of(way);
     }
 
-    private void fillTagsFromFeature(final JsonObject feature, final OsmPrimitive primitive) {
-        if (feature != null) {
-            primitive.setKeys(getTags(feature));
+    private static void fillTagsFromFeature(final Map<String, String> tags, final OsmPrimitive primitive) {
+        if (tags != null) {
+            primitive.setKeys(tags);
         }
     }
 
-    private void parseUnknown(final JsonObject object) {
-        Logging.warn(tr("Unknown json object found {0}", object));
+    private static void parseUnknown(final GeoJsonObject object) {
+        Logging.warn(tr("Unknown json object found {0}", object.type));
     }
 
-    private Map<String, String> getTags(final JsonObject feature) {
+    /**
+     * Read the members of a {@code properties} object as tags. The
+     * {@code START_OBJECT} event must already have been consumed.
+     *
+     * @return The tags
+     */
+    private Map<String, String> getTags() {
         final Map<String, String> tags = new TreeMap<>();
-
-        if (feature.containsKey(PROPERTIES) && !feature.isNull(PROPERTIES)) {
-            JsonObject properties = feature.getJsonObject(PROPERTIES);
-            for (Map.Entry<String, JsonValue> stringJsonValueEntry : properties.entrySet()) {
-                final JsonValue value = stringJsonValueEntry.getValue();
-
-                if (value instanceof JsonString) {
-                    tags.put(stringJsonValueEntry.getKey(), ((JsonString) value).getString());
-                } else if (value instanceof JsonStructure) {
-                    Logging.warn("The GeoJSON contains an object with property '" + stringJsonValueEntry.getKey()
-                            + "' whose value has the unsupported type '" + value.getClass().getSimpleName()
-                            + "'. That key-value pair is ignored!");
-                } else if (value.getValueType() == JsonValue.ValueType.NULL) {
-                    tags.put(stringJsonValueEntry.getKey(), null);
-                } else {
-                    tags.put(stringJsonValueEntry.getKey(), value.toString());
-                }
+        while (parser.hasNext()) {
+            Event event = parser.next();
+            if (event == Event.END_OBJECT) {
+                break;
+            }
+            if (event != Event.KEY_NAME) {
+                continue;
+            }
+            final String key = parser.getString();
+            final Event value = parser.next();
+            switch (value) {
+            case VALUE_STRING:
+            case VALUE_NUMBER:
+                tags.put(key, parser.getString());
+                break;
+            case VALUE_TRUE:
+                tags.put(key, "true");
+                break;
+            case VALUE_FALSE:
+                tags.put(key, "false");
+                break;
+            case VALUE_NULL:
+                tags.put(key, null);
+                break;
+            default:
+                Logging.warn("The GeoJSON contains an object with property '" + key
+                        + "' whose value has the unsupported type '" + value + "'. That key-value pair is ignored!");
+                skipValue(value);
             }
         }
         return tags;
@@ -282,4 +426,44 @@ public class GeoJsonReader extends AbstractReader {
         return new GeoJsonReader().doParseDataSet(source, progressMonitor);
     }
 
+    /**
+     * The members of a GeoJSON object that are needed to create primitives
+     */
+    private static final class GeoJsonObject {
+        String type;
+        Map<String, String> properties;
+        GeoJsonObject geometry;
+        Coordinates coordinates;
+        List<GeoJsonObject> geometries;
+    }
+
+    /**
+     * A GeoJSON coordinate array. This is either a single position
+     * ({@code [lon, lat]}) or an array of nested coordinate arrays.
+     */
+    private static final class Coordinates {
+        private final double[] position;
+        private final List<Coordinates> children;
+
+        Coordinates(double[] position, List<Coordinates> children) {
+            this.position = position;
+            this.children = children;
+        }
+
+        boolean isPosition() {
+            return position != null && position.length >= 2;
+        }
+
+        double lat() {
+            return position[1];
+        }
+
+        double lon() {
+            return position[0];
+        }
+
+        List<Coordinates> getChildren() {
+            return children == null ? Collections.emptyList() : children;
+        }
+    }
 }
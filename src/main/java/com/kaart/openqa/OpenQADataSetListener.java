@@ -1,7 +1,10 @@
 // License: GPL. For details, see LICENSE file.
 package com.kaart.openqa;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
@@ -21,7 +24,8 @@ import org.openstreetmap.josm.gui.MainApplication;
  */
 public class OpenQADataSetListener implements DataSetListener {
 
-    private List<Bounds> bounds;
+    /** The data source bounds at the last change */
+    private final Set<Bounds> bounds = new HashSet<>();
 
     private final String cacheDir;
 
@@ -38,10 +42,18 @@ public class OpenQADataSetListener implements DataSetListener {
     @Override
     public void dataChanged(DataChangedEvent e) {
         List<Bounds> tBounds = e.getDataset().getDataSourceBounds();
+        List<Bounds> added = new ArrayList<>();
+        for (Bounds bound : tBounds) {
+            if (!bounds.contains(bound)) {
+                added.add(bound);
+            }
+        }
+        // Removed bounds are forgotten, so that they are updated if they are added again
+        bounds.retainAll(new HashSet<>(tBounds));
         List<ErrorLayer> layers = MainApplication.getLayerManager().getLayersOfType(ErrorLayer.class);
-        if (!layers.isEmpty() && (bounds == null || !bounds.containsAll(tBounds))) {
-            bounds = tBounds;
-            OpenQALayerChangeListener.updateOpenQALayers(cacheDir);
+        if (!layers.isEmpty() && !added.isEmpty()) {
+            bounds.addAll(added);
+            OpenQALayerChangeListener.updateOpenQALayers(cacheDir, added);
         }
     }
 
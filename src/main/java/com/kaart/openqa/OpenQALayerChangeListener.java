@@ -4,10 +4,16 @@ package com.kaart.openqa;
 import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.PleaseWaitRunnable;
 import org.openstreetmap.josm.gui.layer.LayerManager.LayerAddEvent;
@@ -15,10 +21,10 @@ import org.openstreetmap.josm.gui.layer.LayerManager.LayerChangeListener;
 import org.openstreetmap.josm.gui.layer.LayerManager.LayerOrderChangeEvent;
 import org.openstreetmap.josm.gui.layer.LayerManager.LayerRemoveEvent;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
-import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.gui.progress.swing.PleaseWaitProgressMonitor;
 import org.openstreetmap.josm.io.OsmTransferException;
-import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Utils;
 import org.xml.sax.SAXException;
 
 import com.kaart.openqa.profiles.keepright.KeepRightInformation;
@@ -29,6 +35,16 @@ import com.kaart.openqa.profiles.osmose.OsmoseInformation;
  *
  */
 public class OpenQALayerChangeListener implements LayerChangeListener {
+    /** The default time in milliseconds to wait for more update requests */
+    public static final int UPDATE_DELAY = 500;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            Utils.newThreadFactory(OpenQA.NAME.toLowerCase() + "-update-scheduler-%d", Thread.NORM_PRIORITY));
+    private static ScheduledFuture<?> pendingUpdate;
+    /** The areas the pending update is for, or {@code null} if it is for all data layers */
+    private static List<Bounds> pendingAreas;
+    private static UpdateLayersTask runningUpdate;
+
     HashMap<OsmDataLayer, OpenQADataSetListener> listeners = new HashMap<>();
     private final String cacheDir;
 
@@ -46,22 +62,12 @@ public class OpenQALayerChangeListener implements LayerChangeListener {
             OsmDataLayer layer = (OsmDataLayer) e.getAddedLayer();
             if (layer.getName().equals(KeepRightInformation.LAYER_NAME))
                 return;
-            int time = 0;
-            while (!MainApplication.getLayerManager().containsLayer(e.getAddedLayer()) && time < 10) {
-                try {
-                    TimeUnit.SECONDS.sleep(1);
-                } catch (InterruptedException e1) {
-                    Thread.currentThread().interrupt();
-                    Logging.debug(e1.getMessage());
-                }
-                time++;
-            }
-
             OpenQADataSetListener listener = new OpenQADataSetListener(cacheDir);
             layer.data.addDataSetListener(listener);
             listeners.put(layer, listener);
             List<ErrorLayer> errorLayers = MainApplication.getLayerManager().getLayersOfType(ErrorLayer.class);
             if (!errorLayers.isEmpty()) {
+                // The update is scheduled, and looks up the data layers when it starts
                 updateOpenQALayers(cacheDir);
             }
         }
@@ -80,35 +86,106 @@ public class OpenQALayerChangeListener implements LayerChangeListener {
     }
 
     /**
-     * Update all the OpenQA layers
+     * Update all the OpenQA layers. Calls are debounced: the update starts once
+     * no other call has been made for {@link #UPDATE_DELAY} milliseconds, so a
+     * burst of calls results in a single update. An update that is still running
+     * when a new one starts is cancelled. Areas that were already downloaded are
+     * not downloaded again (see {@link ErrorLayer#update}).
+     *
+     * @param cacheDir The directory to cache files in
+     */
+    public static synchronized void updateOpenQALayers(String cacheDir) {
+        schedule(cacheDir, null);
+    }
+
+    /**
+     * Update the OpenQA layers in some areas. Calls are debounced like
+     * {@link #updateOpenQALayers(String)}, and the areas of all calls are updated
+     * together.
      *
      * @param cacheDir The directory to cache files in
+     * @param areas    The areas to update
      */
-    public static void updateOpenQALayers(String cacheDir) {
+    public static synchronized void updateOpenQALayers(String cacheDir, Collection<Bounds> areas) {
+        schedule(cacheDir, areas);
+    }
+
+    private static void schedule(String cacheDir, Collection<Bounds> areas) {
+        if (pendingUpdate != null) {
+            pendingUpdate.cancel(false);
+            pendingAreas = merge(pendingAreas, areas);
+        } else {
+            pendingAreas = areas == null ? null : new ArrayList<>(areas);
+        }
+        int delay = Config.getPref().getInt(OpenQA.PREF_PREFIX.concat("update-delay"), UPDATE_DELAY);
+        pendingUpdate = SCHEDULER.schedule(() -> startUpdate(cacheDir), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Combine the areas of 2 updates
+     *
+     * @param areas      The areas of an update, or {@code null} for all areas
+     * @param otherAreas The areas of another update, or {@code null} for all areas
+     * @return The combined areas, or {@code null} for all areas
+     */
+    private static List<Bounds> merge(Collection<Bounds> areas, Collection<Bounds> otherAreas) {
+        if (areas == null || otherAreas == null) {
+            return null;
+        }
+        List<Bounds> merged = new ArrayList<>(areas);
+        merged.addAll(otherAreas);
+        return merged;
+    }
+
+    private static synchronized void startUpdate(String cacheDir) {
+        pendingUpdate = null;
+        List<Bounds> areas = pendingAreas;
+        pendingAreas = null;
         List<OsmDataLayer> osmDataLayers = MainApplication.getLayerManager().getLayersOfType(OsmDataLayer.class);
         if (osmDataLayers.isEmpty())
             return;
-        MainApplication.worker.submit(new UpdateLayersTask(cacheDir, new PleaseWaitProgressMonitor()));
+        if (runningUpdate != null) {
+            runningUpdate.supersede();
+            // The areas of the superseded update may not have been downloaded yet
+            areas = merge(areas, runningUpdate.areas);
+        }
+        runningUpdate = new UpdateLayersTask(cacheDir, areas, new PleaseWaitProgressMonitor());
+        MainApplication.worker.submit(runningUpdate);
+    }
+
+    private static synchronized void updateFinished(UpdateLayersTask task) {
+        if (runningUpdate == task) {
+            runningUpdate = null;
+        }
     }
 
     private static class UpdateLayersTask extends PleaseWaitRunnable {
-        private boolean isCanceled;
+        private volatile boolean isCanceled;
         String cacheDir;
-        ErrorLayer layer;
+        /** The areas to update, or {@code null} for all data layers */
+        final List<Bounds> areas;
+        volatile ErrorLayer layer;
 
-        public UpdateLayersTask(String cacheDir, PleaseWaitProgressMonitor monitor) {
-            this(tr("Update {0} Layers", OpenQA.NAME), monitor, true);
+        public UpdateLayersTask(String cacheDir, List<Bounds> areas, PleaseWaitProgressMonitor monitor) {
+            super(tr("Update {0} Layers", OpenQA.NAME), monitor, true);
             this.cacheDir = cacheDir;
+            this.areas = areas;
         }
 
-        public UpdateLayersTask(String title, ProgressMonitor progressMonitor, boolean ignoreException) {
-            super(title, progressMonitor, ignoreException);
+        /**
+         * Cancel this update, since a newer one will replace it
+         */
+        void supersede() {
+            progressMonitor.cancel();
         }
 
         @Override
         protected void cancel() {
             isCanceled = true;
-            layer.cancel();
+            ErrorLayer currentLayer = layer;
+            if (currentLayer != null) {
+                currentLayer.cancel();
+            }
         }
 
         @Override
@@ -124,13 +201,12 @@ public class OpenQALayerChangeListener implements LayerChangeListener {
             } else {
                 layer = errorLayers.get(0);
             }
-            layer.update(progressMonitor);
+            layer.update(progressMonitor, areas);
         }
 
         @Override
         protected void finish() {
-            // TODO Auto-generated method stub
-
+            updateFinished(this);
         }
     }
 
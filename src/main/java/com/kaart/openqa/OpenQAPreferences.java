@@ -7,13 +7,9 @@ import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.GridBagLayout;
 import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
 
 import javax.swing.JButton;
-import javax.swing.JCheckBox;
 import javax.swing.JPanel;
-import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
 
 import org.openstreetmap.josm.gui.preferences.DefaultTabPreferenceSetting;
@@ -21,7 +17,6 @@ import org.openstreetmap.josm.gui.preferences.PreferenceTabbedPane;
 import org.openstreetmap.josm.gui.preferences.PreferenceTabbedPane.PreferencePanel;
 import org.openstreetmap.josm.gui.preferences.SubPreferenceSetting;
 import org.openstreetmap.josm.gui.preferences.TabPreferenceSetting;
-import org.openstreetmap.josm.gui.widgets.VerticallyScrollablePanel;
 import org.openstreetmap.josm.tools.GBC;
 
 import com.kaart.openqa.profiles.ProfilePreferences;
@@ -55,24 +50,21 @@ public class OpenQAPreferences extends DefaultTabPreferenceSetting implements Su
 
             JButton selectNone = new JButton(tr("Select none"));
             selectNone.addActionListener(e -> toggleBoxes(preference, false));
-            JPanel tPanel = new VerticallyScrollablePanel(new GridBagLayout());
-            tPanel.add(selectAll);
-            tPanel.add(selectNone, GBC.eol());
-            tPanel.add(subTab);
-            tp.add(preference.getTitle(), new JScrollPane(tPanel));
+            JPanel buttons = new JPanel(new GridBagLayout());
+            buttons.add(selectAll);
+            buttons.add(selectNone, GBC.eol());
+            JPanel tPanel = new JPanel(new BorderLayout());
+            tPanel.add(buttons, BorderLayout.NORTH);
+            tPanel.add(subTab, BorderLayout.CENTER);
+            tp.add(preference.getTitle(), tPanel);
         }
         testPanel.add(tp, BorderLayout.CENTER);
         PreferencePanel preferenceTab = gui.createPreferenceTab(this);
         preferenceTab.add(testPanel, GBC.eol().fill(GBC.BOTH));
     }
 
-    private void toggleBoxes(ProfilePreferences preference, boolean checked) {
-        Map<String, List<JCheckBox>> boxes = preference.getCheckBoxes();
-        for (List<JCheckBox> boxList : boxes.values()) {
-            for (JCheckBox checkBox : boxList) {
-                checkBox.setSelected(checked);
-            }
-        }
+    private static void toggleBoxes(ProfilePreferences preference, boolean checked) {
+        preference.getSelection().setAllSelected(checked);
     }
 
     @Override
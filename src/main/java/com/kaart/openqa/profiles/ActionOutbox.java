@@ -0,0 +1,254 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openstreetmap.josm.tools.HttpClient;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+import com.kaart.openqa.CachedFile;
+import com.kaart.openqa.OpenQA;
+
+/**
+ * Status changes of errors that have not been sent to their source yet. Changes
+ * are sent and saved in the background, and are retried with a growing delay
+ * until they succeed. Only the last change of an error is sent. The outbox is
+ * stored in the cache directory, so changes that could not be sent are sent in
+ * the next session.
+ */
+final class ActionOutbox {
+    /** The name of the file that the outbox is stored in */
+    static final String FILE_NAME = "outbox.properties";
+    /** The delay before the first retry, in seconds */
+    static final long MIN_RETRY_DELAY = 10;
+    /** The maximum delay between retries, in seconds */
+    static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toSeconds(10);
+    /** The status code of responses to too many requests */
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private static final Map<File, ActionOutbox> OUTBOXES = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService SENDER = Executors.newSingleThreadScheduledExecutor(
+            Utils.newThreadFactory(OpenQA.NAME.toLowerCase() + "-outbox-%d", Thread.NORM_PRIORITY));
+
+    /**
+     * Calls the URL of a change
+     */
+    @FunctionalInterface
+    interface Sender {
+        /**
+         * @param url The URL that records the change
+         * @return The status code of the response
+         * @throws IOException if the server could not be reached
+         */
+        int send(String url) throws IOException;
+    }
+
+    private final File file;
+    private final ScheduledExecutorService executor;
+    private final Sender sender;
+    /** The URLs to call, by error */
+    private final Map<String, String> pending = new LinkedHashMap<>();
+    private boolean scheduled;
+    private boolean saveScheduled;
+    private int failures;
+
+    /**
+     * Create an outbox. Changes are sent and saved on the executor, which must
+     * run one task at a time.
+     *
+     * @param file     The file that the outbox is stored in
+     * @param executor The executor that sends and saves changes
+     * @param sender   The sender of changes
+     */
+    ActionOutbox(File file, ScheduledExecutorService executor, Sender sender) {
+        this.file = file;
+        this.executor = executor;
+        this.sender = sender;
+    }
+
+    /**
+     * Get the outbox of a cache directory. Changes that were left from an
+     * earlier session are sent when it is first used.
+     *
+     * @param cacheDir The cache directory
+     * @return The outbox
+     */
+    static ActionOutbox get(String cacheDir) {
+        return OUTBOXES.computeIfAbsent(new File(cacheDir, FILE_NAME).getAbsoluteFile(),
+                file -> new ActionOutbox(file, SENDER, ActionOutbox::post).load());
+    }
+
+    /**
+     * Send a status change of an error. A change that has not been sent yet for
+     * the same error is replaced.
+     *
+     * @param error The source and id of the error
+     * @param url   The URL that records the change
+     */
+    synchronized void send(String error, String url) {
+        // Move the error to the end, so that changes are sent in order
+        pending.remove(error);
+        pending.put(error, url);
+        scheduleSave();
+        schedule(0);
+    }
+
+    private void schedule(long delay) {
+        if (!scheduled && !pending.isEmpty()) {
+            scheduled = true;
+            executor.schedule(this::flush, delay, TimeUnit.SECONDS);
+        }
+    }
+
+    private void scheduleSave() {
+        if (!saveScheduled) {
+            saveScheduled = true;
+            executor.execute(this::save);
+        }
+    }
+
+    private void flush() {
+        Map<String, String> batch;
+        synchronized (this) {
+            scheduled = false;
+            batch = new LinkedHashMap<>(pending);
+        }
+        boolean failed = false;
+        for (Map.Entry<String, String> entry : batch.entrySet()) {
+            try {
+                int code = sender.send(entry.getValue());
+                if (isRetried(code)) {
+                    throw new IOException(tr("The server returned {0} for {1}", code, entry.getValue()));
+                }
+                if (code >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                    // Sending it again would not help
+                    Logging.warn(tr("The server refused {0} with {1}", entry.getValue(), code));
+                }
+            } catch (IOException e) {
+                Logging.warn(tr("Could not send {0}, it will be retried: {1}", entry.getValue(), e.getMessage()));
+                failed = true;
+                break;
+            }
+            synchronized (this) {
+                // The error may have been changed again while this change was sent
+                if (pending.remove(entry.getKey(), entry.getValue())) {
+                    scheduleSave();
+                }
+            }
+        }
+        synchronized (this) {
+            if (failed) {
+                failures++;
+                schedule(getRetryDelay(failures));
+            } else {
+                failures = 0;
+                schedule(0);
+            }
+        }
+    }
+
+    /**
+     * @param code The status code of a response
+     * @return {@code true} if the change should be sent again later
+     */
+    static boolean isRetried(int code) {
+        return code >= HttpURLConnection.HTTP_INTERNAL_ERROR || code == HttpURLConnection.HTTP_CLIENT_TIMEOUT
+                || code == HTTP_TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * @param failures The number of times in a row that sending failed
+     * @return The delay before the next retry, in seconds
+     */
+    static long getRetryDelay(int failures) {
+        return Math.min(MAX_RETRY_DELAY, MIN_RETRY_DELAY << Math.min(failures - 1, 16));
+    }
+
+    /**
+     * Call the URL of a change
+     *
+     * @param url The URL
+     * @return The status code of the response
+     * @throws IOException if the server could not be reached
+     */
+    private static int post(String url) throws IOException {
+        HttpClient.Response response = null;
+        try {
+            response = HttpClient.create(new URL(url)).setHeader("User-Agent", CachedFile.getUserAgent()).connect();
+            return response.getResponseCode();
+        } finally {
+            if (response != null) {
+                response.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Read the changes that were left from an earlier session, and start
+     * sending them
+     *
+     * @return This outbox
+     */
+    ActionOutbox load() {
+        if (file.isFile()) {
+            Properties properties = new Properties();
+            try (InputStream stream = Files.newInputStream(file.toPath())) {
+                properties.load(stream);
+            } catch (IOException | IllegalArgumentException e) {
+                Logging.error(e);
+            }
+            synchronized (this) {
+                for (String error : properties.stringPropertyNames()) {
+                    pending.put(error, properties.getProperty(error));
+                }
+                schedule(0);
+            }
+        }
+        return this;
+    }
+
+    private void save() {
+        Properties properties = new Properties();
+        synchronized (this) {
+            saveScheduled = false;
+            properties.putAll(pending);
+        }
+        if (properties.isEmpty()) {
+            if (file.exists()) {
+                Utils.deleteFile(file);
+            }
+            return;
+        }
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Logging.warn(tr("Could not create the cache directory {0}", directory));
+        }
+        File temporary = new File(directory, FILE_NAME + ".part");
+        try {
+            try (OutputStream stream = Files.newOutputStream(temporary.toPath())) {
+                properties.store(stream, null);
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Logging.error(e);
+            Utils.deleteFile(temporary);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.DataSet;
+
+/**
+ * The result of downloading the errors of a source for some areas. Areas that
+ * could not be downloaded, or whose response was cut off at the result limit of
+ * the source, are left out of {@link #getCompleteBounds()}, so that the errors
+ * that are shown there are kept.
+ */
+public final class DownloadedErrors {
+    private final DataSet dataSet;
+    private final List<Bounds> completeBounds;
+
+    /**
+     * Create a new result
+     *
+     * @param dataSet        The errors that were downloaded
+     * @param completeBounds The areas whose errors were all downloaded
+     */
+    DownloadedErrors(DataSet dataSet, List<Bounds> completeBounds) {
+        this.dataSet = dataSet;
+        this.completeBounds = Collections.unmodifiableList(completeBounds);
+    }
+
+    /**
+     * @return The errors that were downloaded
+     */
+    public DataSet getDataSet() {
+        return dataSet;
+    }
+
+    /**
+     * @return The areas whose errors were all downloaded. Errors in these areas
+     *         that were not downloaded are gone.
+     */
+    public List<Bounds> getCompleteBounds() {
+        return completeBounds;
+    }
+}
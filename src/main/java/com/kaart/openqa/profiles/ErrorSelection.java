@@ -0,0 +1,238 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.swing.AbstractListModel;
+
+/**
+ * The errors that can be enabled for a source, and which of them are enabled.
+ * Only the entries that match the current filter are elements of the list.
+ *
+ * @see ErrorSelectionPanel
+ */
+public class ErrorSelection extends AbstractListModel<ErrorSelection.Entry> {
+    private static final long serialVersionUID = 1L;
+
+    private transient List<Entry> entries = Collections.emptyList();
+    private transient List<Entry> visible = Collections.emptyList();
+    private final transient Set<String> selected = new HashSet<>();
+    private String filter = "";
+    private boolean loaded;
+
+    /**
+     * An error that can be enabled, or a group of them
+     */
+    public static final class Entry {
+        private final String code;
+        private final String name;
+        private final List<Entry> children = new ArrayList<>();
+        private Entry group;
+
+        /**
+         * Create a new entry
+         *
+         * @param code The code that is saved when the entry is enabled, or
+         *             {@code null} for a group that only holds other entries
+         * @param name The name that is shown for the entry
+         */
+        public Entry(String code, String name) {
+            this.code = code;
+            this.name = name;
+        }
+
+        /**
+         * Add an entry to this group
+         *
+         * @param child The entry to add
+         * @return this, for easy chaining
+         */
+        public Entry add(Entry child) {
+            children.add(child);
+            child.group = this;
+            return this;
+        }
+
+        /**
+         * @return The code of the entry, or {@code null} for a group without a code
+         */
+        public String getCode() {
+            return code;
+        }
+
+        /**
+         * @return The name of the entry
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The group that this entry is in, or {@code null}
+         */
+        public Entry getGroup() {
+            return group;
+        }
+
+        /**
+         * @return The entries in this group
+         */
+        public List<Entry> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+
+        private boolean matches(String filter) {
+            return filter.isEmpty() || (code != null && code.contains(filter))
+                    || name.toLowerCase(Locale.ROOT).contains(filter);
+        }
+    }
+
+    /**
+     * Set the entries. This must be called on the EDT.
+     *
+     * @param entries  The top level entries
+     * @param selected The codes of the enabled entries
+     */
+    public void setEntries(List<Entry> entries, Collection<String> selected) {
+        this.entries = new ArrayList<>(entries);
+        this.selected.clear();
+        this.selected.addAll(selected);
+        loaded = true;
+        refilter();
+    }
+
+    /**
+     * @return {@code true} once the entries have been set
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Only show entries whose code or name contains some text. Groups are shown
+     * when they or any of their entries match.
+     *
+     * @param filter The text to look for
+     */
+    public void setFilter(String filter) {
+        this.filter = filter.trim().toLowerCase(Locale.ROOT);
+        refilter();
+    }
+
+    private void refilter() {
+        int oldSize = visible.size();
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : entries) {
+            List<Entry> children = new ArrayList<>();
+            for (Entry child : entry.children) {
+                if (entry.matches(filter) || child.matches(filter)) {
+                    children.add(child);
+                }
+            }
+            if (entry.matches(filter) || !children.isEmpty()) {
+                result.add(entry);
+                result.addAll(children);
+            }
+        }
+        visible = result;
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        if (!visible.isEmpty()) {
+            fireIntervalAdded(this, 0, visible.size() - 1);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return visible.size();
+    }
+
+    @Override
+    public Entry getElementAt(int index) {
+        return visible.get(index);
+    }
+
+    /**
+     * Check if an entry is enabled. A group is enabled when it and all of its
+     * entries are enabled.
+     *
+     * @param entry The entry
+     * @return {@code true} if the entry has codes and they are all enabled
+     */
+    public boolean isSelected(Entry entry) {
+        if (entry.children.isEmpty()) {
+            return entry.code != null && selected.contains(entry.code);
+        }
+        List<String> codes = new ArrayList<>();
+        addCodes(entry, codes);
+        return selected.containsAll(codes);
+    }
+
+    /**
+     * Enable or disable the entry at an index. Toggling a group enables or
+     * disables the group and all of its entries, including the ones that are
+     * filtered out.
+     *
+     * @param index The index of the entry in the filtered list
+     */
+    public void toggle(int index) {
+        Entry entry = visible.get(index);
+        List<String> codes = new ArrayList<>();
+        addCodes(entry, codes);
+        if (isSelected(entry)) {
+            selected.removeAll(codes);
+        } else {
+            selected.addAll(codes);
+        }
+        // A group and its entries change together
+        fireContentsChanged(this, 0, visible.size() - 1);
+    }
+
+    /**
+     * Enable or disable all entries, including the ones that are filtered out
+     *
+     * @param select {@code true} to enable all entries
+     */
+    public void setAllSelected(boolean select) {
+        selected.clear();
+        if (select) {
+            for (Entry entry : entries) {
+                addCodes(entry, selected);
+            }
+        }
+        if (!visible.isEmpty()) {
+            fireContentsChanged(this, 0, visible.size() - 1);
+        }
+    }
+
+    /**
+     * Get the codes of the enabled entries
+     *
+     * @return The codes, in the order of the entries
+     */
+    public List<String> getSelectedCodes() {
+        Set<String> codes = new LinkedHashSet<>();
+        for (Entry entry : entries) {
+            addCodes(entry, codes);
+        }
+        codes.retainAll(selected);
+        return new ArrayList<>(codes);
+    }
+
+    private static void addCodes(Entry entry, Collection<String> codes) {
+        if (entry.code != null) {
+            codes.add(entry.code);
+        }
+        for (Entry child : entry.children) {
+            addCodes(child, codes);
+        }
+    }
+}
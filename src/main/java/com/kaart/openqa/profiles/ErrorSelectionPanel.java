@@ -0,0 +1,168 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import javax.swing.AbstractAction;
+import javax.swing.BorderFactory;
+import javax.swing.JCheckBox;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.KeyStroke;
+import javax.swing.ListCellRenderer;
+import javax.swing.SwingConstants;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.gui.widgets.JosmTextField;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+import com.kaart.openqa.OpenQA;
+
+/**
+ * A searchable list of errors that can be enabled. The errors are loaded in
+ * the background, and a placeholder is shown until they are available. Only
+ * the rows that are visible are rendered.
+ */
+public class ErrorSelectionPanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(
+            Utils.newThreadFactory(OpenQA.NAME.toLowerCase() + "-preferences-%d", Thread.NORM_PRIORITY));
+
+    private final transient ErrorSelection selection;
+    private final JLabel placeholder = new JLabel(tr("Loading..."), SwingConstants.CENTER);
+    private final JList<ErrorSelection.Entry> list;
+
+    /**
+     * Create a new panel
+     *
+     * @param selection The errors to show
+     */
+    public ErrorSelectionPanel(ErrorSelection selection) {
+        super(new BorderLayout());
+        this.selection = selection;
+
+        JosmTextField search = new JosmTextField();
+        search.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                selection.setFilter(search.getText());
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                selection.setFilter(search.getText());
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                selection.setFilter(search.getText());
+            }
+        });
+        JPanel searchPanel = new JPanel(new BorderLayout());
+        searchPanel.add(new JLabel(tr("Search:")), BorderLayout.WEST);
+        searchPanel.add(search, BorderLayout.CENTER);
+        add(searchPanel, BorderLayout.NORTH);
+
+        list = new JList<>(selection);
+        list.setCellRenderer(new EntryRenderer());
+        list.setFixedCellHeight(new JCheckBox("X").getPreferredSize().height);
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = list.locationToIndex(e.getPoint());
+                if (index >= 0 && list.getCellBounds(index, index).contains(e.getPoint())) {
+                    selection.toggle(index);
+                }
+            }
+        });
+        list.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_SPACE, 0), "toggle");
+        list.getActionMap().put("toggle", new AbstractAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                for (int index : list.getSelectedIndices()) {
+                    selection.toggle(index);
+                }
+            }
+        });
+        add(placeholder, BorderLayout.CENTER);
+    }
+
+    /**
+     * Load the errors in the background, and show them once they are loaded
+     *
+     * @param entries  Get the errors that can be enabled
+     * @param selected Get the codes of the errors that are enabled
+     */
+    public void load(Supplier<List<ErrorSelection.Entry>> entries, Supplier<Collection<String>> selected) {
+        LOADER.execute(() -> {
+            try {
+                List<ErrorSelection.Entry> loadedEntries = entries.get();
+                Collection<String> loadedSelected = selected.get();
+                GuiHelper.runInEDT(() -> {
+                    selection.setEntries(loadedEntries, loadedSelected);
+                    remove(placeholder);
+                    add(new JScrollPane(list), BorderLayout.CENTER);
+                    revalidate();
+                    repaint();
+                });
+            } catch (RuntimeException e) {
+                Logging.error(e);
+                GuiHelper.runInEDT(() -> placeholder.setText(tr("The errors could not be loaded")));
+            }
+        });
+    }
+
+    private class EntryRenderer implements ListCellRenderer<ErrorSelection.Entry> {
+        private final JCheckBox checkBox = new JCheckBox();
+        private final JLabel code = new JLabel();
+        private final JPanel panel = new JPanel(new BorderLayout());
+        private final Font plain;
+        private final Font bold;
+
+        EntryRenderer() {
+            checkBox.setOpaque(false);
+            plain = checkBox.getFont();
+            bold = plain.deriveFont(Font.BOLD);
+            panel.add(checkBox, BorderLayout.CENTER);
+            panel.add(code, BorderLayout.EAST);
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends ErrorSelection.Entry> list,
+                ErrorSelection.Entry value, int index, boolean isSelected, boolean cellHasFocus) {
+            boolean isGroup = !value.getChildren().isEmpty();
+            checkBox.setText(value.getName());
+            checkBox.setFont(isGroup ? bold : plain);
+            checkBox.setSelected(selection.isSelected(value));
+            checkBox.setForeground(isSelected ? list.getSelectionForeground() : list.getForeground());
+            // Entries in groups are indented below their group
+            int indent = value.getGroup() == null ? 0 : checkBox.getIconTextGap() * 4;
+            checkBox.setBorder(BorderFactory.createEmptyBorder(0, indent, 0, 0));
+            code.setText(value.getCode() == null ? "" : value.getCode());
+            code.setForeground(checkBox.getForeground());
+            panel.setBackground(isSelected ? list.getSelectionBackground() : list.getBackground());
+            return panel;
+        }
+    }
+}
@@ -4,8 +4,14 @@ package com.kaart.openqa.profiles;
 import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
@@ -16,7 +22,6 @@ import org.openstreetmap.josm.data.osm.BBox;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
-import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.User;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
@@ -26,6 +31,7 @@ import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.ImageProvider;
 import org.openstreetmap.josm.tools.ImageProvider.ImageSizes;
 import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
 
 import com.kaart.openqa.CachedFile;
 import com.kaart.openqa.ErrorLayer;
@@ -44,13 +50,46 @@ public abstract class GenericInformation {
     /** The key to store unique the error id */
     public static final String ERROR_ID = "error_id";
 
+    /**
+     * The key that lists the keys that were added with the additional information
+     * of an error, separated by {@code ;}. The list includes this key.
+     */
+    public static final String ADDITIONAL_INFORMATION = "ADDITIONAL_INFORMATION";
+
     /** the difference between groups (integer numbers) */
     public static final int GROUP_DIFFERENCE = 10;
 
+    /** The default maximum number of simultaneous downloads per source */
+    public static final int DEFAULT_CONNECTIONS = 4;
+
+    /** The time in seconds that downloaded error data is kept */
+    public static final long MAX_AGE = 86400;
+
+    /** The size of the largest tiles that errors are downloaded for, in degrees */
+    public static final double TILE_SIZE = 0.1;
+
+    /** The size of the cells that nodes are binned in for default bounds, in degrees */
+    public static final double DEFAULT_BOUNDS_CELL_SIZE = 0.01;
+
+    /** The maximum area of a default bound, in square meters */
+    public static final double DEFAULT_BOUNDS_MAX_AREA = 10_000_000;
+
+    /** The default size budget for the files in {@link #DATA_SUB_DIR}, in bytes */
+    public static final long DEFAULT_CACHE_SIZE = 64L * 1024 * 1024;
+
+    /** The icons for all sources */
+    public static final IconCache ICON_CACHE = new IconCache(IconCache.DEFAULT_CAPACITY);
+
     protected String cacheDir;
 
+    private final TilePlanner tilePlanner = new TilePlanner(TILE_SIZE, MAX_AGE * 1000);
+
     public GenericInformation(String cacheDir) {
         this.cacheDir = cacheDir;
+        if (cacheDir != null) {
+            // Send the changes that were left from the last session
+            ActionOutbox.get(cacheDir);
+        }
     }
 
     /** The layer name */
@@ -81,21 +120,35 @@ public abstract class GenericInformation {
      */
     public static CachedFile getFile(String url, String type, String directory) {
         CachedFile cache = new CachedFile(url);
-        cache.setMaxAge(86400);
+        cache.setMaxAge(MAX_AGE);
         cache.setHttpAccept(type);
         cache.setDestDir(directory);
         return cache;
     }
 
     /**
-     * Get an icon for a string/size combination
+     * Get an icon for a string/size combination. Icons are kept in memory in
+     * {@link #ICON_CACHE}, so this is cheap to call while painting.
      *
      * @param string The string with which to get information -- defaults to
      *               "dialogs/notes"
      * @param size   The size of the note
      * @return {@code ImageIcon} to associate with a {@code String string}
      */
-    public ImageIcon getIcon(String string, ImageSizes size) {
+    public final ImageIcon getIcon(String string, ImageSizes size) {
+        return ICON_CACHE.get(getName(), string, size, () -> createIcon(string, size));
+    }
+
+    /**
+     * Create an icon for a string/size combination. This is only called when the
+     * icon is not in {@link #ICON_CACHE}.
+     *
+     * @param string The string with which to get information -- defaults to
+     *               "dialogs/notes"
+     * @param size   The size of the note
+     * @return {@code ImageIcon} to associate with a {@code String string}
+     */
+    protected ImageIcon createIcon(String string, ImageSizes size) {
         return ImageProvider.get("dialogs/notes", "note_open", size);
     }
 
@@ -109,80 +162,267 @@ public abstract class GenericInformation {
      *         {@code bounds}
      */
     public DataSet getErrors(DataSet dataSet, ProgressMonitor progressMonitor) {
+        return getErrors(getBounds(dataSet, progressMonitor), progressMonitor);
+    }
+
+    /**
+     * Get the areas to download errors for
+     *
+     * @param dataSet         {@code DataSet} to get errors for
+     * @param progressMonitor The {@code ProgressMonitor} with which to monitor
+     *                        progress
+     * @return The tiles covering the data source bounds of the {@code dataSet} (or
+     *         bounds built from its primitives if it has none) that have not been
+     *         downloaded recently
+     */
+    public List<Bounds> getBounds(DataSet dataSet, ProgressMonitor progressMonitor) {
         List<Bounds> bounds = dataSet.getDataSourceBounds();
         if (bounds.isEmpty()) {
             bounds = getDefaultBounds(dataSet, progressMonitor.createSubTaskMonitor(0, false));
         }
-        return getErrors(bounds, progressMonitor);
+        return getBounds(bounds);
+    }
+
+    /**
+     * Get the areas to download errors for
+     *
+     * @param areas The areas that errors are needed for
+     * @return The tiles covering {@code areas} that have not been downloaded
+     *         recently
+     */
+    public List<Bounds> getBounds(List<Bounds> areas) {
+        return tilePlanner.plan(areas, buildDownloadErrorList());
+    }
+
+    /**
+     * Forget that areas were downloaded, so that they are downloaded again the next
+     * time they are needed
+     *
+     * @param bounds The areas returned by {@link #getBounds} to forget
+     */
+    public void markStale(List<Bounds> bounds) {
+        tilePlanner.markStale(bounds);
+    }
+
+    /**
+     * Forget all downloaded areas
+     */
+    public void markStale() {
+        tilePlanner.markStale();
     }
 
     /**
-     * Get errors given a defaultDownloadTypes of bounds
+     * Get errors given a defaultDownloadTypes of bounds. Up to
+     * {@link #getMaximumConnections()} bounds are downloaded and parsed at the
+     * same time, and the results are merged as they come in.
      *
      * @param bounds          {@code List<Bounds>} to get data for
      * @param progressMonitor The {@code ProgressMonitor} with which to monitor
      *                        progress
-     * @return A new {@code Layer} that has error information for the {@code bounds}
+     * @return A new {@code DataSet} that has error information for the
+     *         {@code bounds}, and the bounds that were downloaded successfully
+     */
+    public DownloadedErrors getErrors(List<Bounds> bounds, ProgressMonitor progressMonitor) {
+        ProgressMonitor monitor = progressMonitor.createSubTaskMonitor(0, false);
+        monitor.beginTask(tr("Getting {0} errors", getName()));
+        String windowTitle = tr("Updating {0} information", getName());
+        if (bounds.size() > 10) {
+            monitor.subTask(windowTitle);
+            monitor.setTicksCount(bounds.size());
+            monitor.setTicks(0);
+        } else {
+            monitor.indeterminateSubTask(windowTitle);
+        }
+        DataSet returnDataSet = null;
+        List<Bounds> completeBounds = new ArrayList<>();
+        if (bounds.isEmpty()) {
+            monitor.finishTask();
+            return new DownloadedErrors(new DataSet(), completeBounds);
+        }
+        String variant = buildDownloadErrorList();
+        int threads = Math.max(1, Math.min(bounds.size(), getMaximumConnections()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, Utils.newThreadFactory(
+                OpenQA.NAME.toLowerCase() + "-" + getName().toLowerCase() + "-%d", Thread.NORM_PRIORITY));
+        CompletionService<DataSet> downloads = new ExecutorCompletionService<>(executor);
+        Map<Future<DataSet>, Bounds> downloadBounds = new HashMap<>();
+        for (Bounds bound : bounds) {
+            downloadBounds.put(downloads.submit(() -> {
+                DataSet ds = getGeoJsonErrors(bound);
+                // A truncated response is missing errors, so it is downloaded again next time
+                if (ds != null && !isTruncated(ds)) {
+                    tilePlanner.markFresh(bound, variant);
+                } else if (ds != null) {
+                    Logging.info("{0} returned the maximum number of errors for {1}", getName(), bound);
+                }
+                return ds;
+            }), bound);
+        }
+        try {
+            int remaining = bounds.size();
+            while (remaining > 0 && !monitor.isCanceled()) {
+                Future<DataSet> download = downloads.poll(100, TimeUnit.MILLISECONDS);
+                if (download == null)
+                    continue;
+                remaining--;
+                DataSet ds = getResult(download);
+                // A truncated response only adds errors, the missing ones are not gone
+                if (ds != null && !isTruncated(ds)) {
+                    completeBounds.add(downloadBounds.get(download));
+                }
+                if (ds == null) {
+                    monitor.worked(1);
+                } else if (returnDataSet == null) {
+                    returnDataSet = ds;
+                    monitor.worked(1);
+                } else {
+                    returnDataSet.mergeFrom(ds, monitor.createSubTaskMonitor(1, false));
+                }
+            }
+        } catch (InterruptedException e) {
+            Logging.debug(e.getMessage());
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+            monitor.finishTask();
+        }
+        trimCache();
+        return new DownloadedErrors(returnDataSet == null ? new DataSet() : returnDataSet, completeBounds);
+    }
+
+    /**
+     * Delete the least recently used data files once they are larger than the
+     * {@code openqa.cache-size} preference
      */
-    public abstract DataSet getErrors(List<Bounds> bounds, ProgressMonitor progressMonitor);
+    protected void trimCache() {
+        CachedFile.trim(new File(cacheDir, DATA_SUB_DIR),
+                Config.getPref().getLong(OpenQA.PREF_PREFIX.concat("cache-size"), DEFAULT_CACHE_SIZE));
+    }
+
+    private static DataSet getResult(Future<DataSet> download) throws InterruptedException {
+        try {
+            return download.get();
+        } catch (ExecutionException e) {
+            Logging.error(e);
+            return null;
+        }
+    }
+
+    private boolean isTruncated(DataSet ds) {
+        return ds.getNodes().size() >= getResultLimit();
+    }
 
     /**
-     * Get the bounds for a dataSet
+     * @return The maximum number of errors the source returns for one area. A
+     *         response with this many errors may be missing some.
+     */
+    protected int getResultLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Download and parse the errors for a single area. This is called from
+     * worker threads, so it must not touch the UI.
+     *
+     * @param bound The area to get errors for
+     * @return A new {@code DataSet} with the errors in {@code bound}, or
+     *         {@code null} if they could not be downloaded
+     */
+    protected abstract DataSet getGeoJsonErrors(Bounds bound);
+
+    /**
+     * Get the maximum number of simultaneous downloads for this source
+     *
+     * @return The maximum number of areas to download at the same time
+     */
+    public int getMaximumConnections() {
+        return Math.max(1, Config.getPref().getInt(
+                OpenQA.PREF_PREFIX.concat(getName().toLowerCase()).concat("-connections"), DEFAULT_CONNECTIONS));
+    }
+
+    /**
+     * Get the bounds for a dataSet. Nodes are binned on a grid of
+     * {@link #DEFAULT_BOUNDS_CELL_SIZE} degrees, and horizontally adjacent cells
+     * are joined while the result stays below {@link #DEFAULT_BOUNDS_MAX_AREA}.
+     * This runs in linear time in the number of nodes.
      *
      * @param dataSet with the data of interest
      * @param monitor the ProgressMonitor with which to see progress with
      * @return The bounds that encompasses the @{code DataSet}
      */
     public static List<Bounds> getDefaultBounds(DataSet dataSet, ProgressMonitor monitor) {
-        if (false) {
-            monitor.beginTask(tr("Building default bounds"), dataSet.allPrimitives().size());
-            List<BBox> bboxes = new ArrayList<>();
-            double bboxMaxSize = 10000000;
-            // Ensure that we go through a dataset predictably
-            TreeSet<OsmPrimitive> treeSet = new TreeSet<>(dataSet.allPrimitives());
-            for (OsmPrimitive osm : treeSet) {
-                if (monitor.isCanceled())
-                    break;
-                monitor.worked(1);
-                // Don't look at relations -- they can get really large, really fast.
-                if (!(osm instanceof Relation)) {
-                    boolean added = false;
-                    BBox smallestBBox = null;
-                    BBox osmBBox = osm.getBBox();
-                    for (BBox bound : bboxes) {
-                        if (bound.bounds(osmBBox) && bound.isValid()) {
-                            // Since osmBBox is entirely within the bound, don't add it.
-                            added = true;
-                            smallestBBox = bound;
-                            break;
-                        }
-                        BBox tBound = new BBox(bound);
-                        tBound.add(osmBBox);
-                        double area = getArea(tBound);
-                        if (area < bboxMaxSize && area < getArea(smallestBBox)) {
-                            smallestBBox = bound;
-                        }
-                    }
-                    if (!added && smallestBBox == null) {
-                        bboxes.add(osmBBox);
-                    } else if (!added && smallestBBox != null) {
-                        smallestBBox.add(osmBBox);
-                        if (!bboxes.contains(smallestBBox))
-                            bboxes.add(smallestBBox);
-                    }
+        Collection<Node> nodes = dataSet.getNodes();
+        monitor.beginTask(tr("Building default bounds"), nodes.size());
+        Map<Long, Cell> cells = new HashMap<>();
+        int count = 0;
+        for (Node node : nodes) {
+            if (++count % 1000 == 0) {
+                if (monitor.isCanceled()) {
+                    monitor.finishTask();
+                    return Collections.emptyList();
                 }
+                monitor.worked(1000);
             }
+            if (node.isDeleted() || !node.isLatLonKnown())
+                continue;
+            LatLon coor = node.getCoor();
+            int column = (int) Math.floor(coor.lon() / DEFAULT_BOUNDS_CELL_SIZE);
+            int row = (int) Math.floor(coor.lat() / DEFAULT_BOUNDS_CELL_SIZE);
+            long key = ((long) row << 32) | (column & 0xffffffffL);
+            Cell cell = cells.get(key);
+            if (cell == null) {
+                cells.put(key, new Cell(row, column, coor));
+            } else {
+                cell.bbox.add(coor.lon(), coor.lat());
+            }
+        }
 
-            List<Bounds> rBounds = new ArrayList<>();
-            for (BBox bound : bboxes) {
-                Bounds rBound = new Bounds(bound.getBottomRight());
-                rBound.extend(bound.getTopLeft());
-                rBounds.add(rBound);
+        List<Cell> sorted = new ArrayList<>(cells.values());
+        sorted.sort(Comparator.<Cell>comparingInt(cell -> cell.row).thenComparingInt(cell -> cell.column));
+        List<Bounds> rBounds = new ArrayList<>();
+        BBox run = null;
+        Cell previous = null;
+        for (Cell cell : sorted) {
+            if (run != null && previous.row == cell.row && previous.column + 1 == cell.column) {
+                BBox joined = new BBox(run);
+                joined.add(cell.bbox);
+                if (getArea(joined) <= DEFAULT_BOUNDS_MAX_AREA) {
+                    run = joined;
+                    previous = cell;
+                    continue;
+                }
             }
-            monitor.finishTask();
-            return rBounds;
+            if (run != null) {
+                rBounds.add(toBounds(run));
+            }
+            run = new BBox(cell.bbox);
+            previous = cell;
+        }
+        if (run != null) {
+            rBounds.add(toBounds(run));
+        }
+        monitor.finishTask();
+        return rBounds;
+    }
+
+    private static Bounds toBounds(BBox bbox) {
+        Bounds rBound = new Bounds(bbox.getBottomRight());
+        rBound.extend(bbox.getTopLeft());
+        return rBound;
+    }
+
+    /**
+     * A grid cell used to build the default bounds
+     */
+    private static final class Cell {
+        final int row;
+        final int column;
+        final BBox bbox;
+
+        Cell(int row, int column, LatLon coor) {
+            this.row = row;
+            this.column = column;
+            this.bbox = new BBox(coor.lon(), coor.lat());
         }
-        return Collections.emptyList();
     }
 
     /**
@@ -225,15 +465,29 @@ public abstract class GenericInformation {
     public abstract String getNodeToolTip(Node node);
 
     /**
-     * Cache additional information for a node
+     * Cache additional information for a node. This does not block; information
+     * that is not available yet is loaded in the background.
      *
-     * @param node to get information from
-     * @return true if there is additional information
+     * @param node     to get information from
+     * @param onLoaded run on the EDT once information has been added to the node
+     *                 in the background
+     * @return true if the additional information is already available
      */
-    public boolean cacheAdditionalInformation(Node node) {
+    public boolean cacheAdditionalInformation(Node node, Runnable onLoaded) {
         return false;
     }
 
+    /**
+     * Start loading additional information for nodes that are likely to be
+     * clicked. This does not block, and may load information for only some of
+     * the nodes.
+     *
+     * @param nodes The nodes to load information for
+     */
+    public void prefetchAdditionalInformation(Collection<Node> nodes) {
+        // Only some sources have additional information
+    }
+
     /**
      * Get a username from an {@code OsmPrimitiveId} as a {@code Long}
      *
@@ -320,26 +574,16 @@ public abstract class GenericInformation {
         }
     }
 
-    protected static class SendInformation implements Runnable {
-        final String url;
-        final String directory;
-
-        public SendInformation(String url, String cacheDir) {
-            this.url = url;
-            directory = cacheDir;
-        }
-
-        @Override
-        public void run() {
-            try (CachedFile cache = new CachedFile(url)) {
-                File dir = new File(directory, DATA_SUB_DIR);
-                cache.setDestDir(dir.getPath());
-                cache.getFile();
-                cache.clear();
-            } catch (IOException e) {
-                Logging.debug(e.getMessage());
-            }
-        }
+    /**
+     * Send a status change of an error in the background. It is kept until it has
+     * been sent, also across sessions, and replaces a change of the same error
+     * that has not been sent yet.
+     *
+     * @param error The id of the error
+     * @param url   The URL that records the change
+     */
+    protected void sendInformation(String error, String url) {
+        ActionOutbox.get(cacheDir).send(getName().toLowerCase() + "-" + error, url);
     }
 
     public static void addChangeSetTag(String source, String id) {
@@ -0,0 +1,140 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import javax.swing.ImageIcon;
+
+import org.openstreetmap.josm.tools.ImageProvider.ImageSizes;
+
+/**
+ * A bounded, least recently used cache of error icons. Icons are keyed by the
+ * source, the error type and the size, so painting a known error never touches
+ * the disk or decodes an image again.
+ */
+public class IconCache {
+    /** The default number of icons to keep in memory */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final Map<Key, ImageIcon> icons;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a new icon cache
+     *
+     * @param capacity The maximum number of icons to keep
+     */
+    public IconCache(final int capacity) {
+        icons = new LinkedHashMap<Key, ImageIcon>(16, 0.75f, true) {
+            private static final long serialVersionUID = -3036016587146829327L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ImageIcon> eldest) {
+                if (size() > capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get an icon, creating it if it isn't cached
+     *
+     * @param source  The name of the source the icon is for
+     * @param error   The error type
+     * @param size    The size of the icon
+     * @param creator Creates the icon if it is not cached. May return null, which
+     *                is not cached. It is called without holding the cache lock,
+     *                so it may be called more than once for the same icon.
+     * @return The icon
+     */
+    public ImageIcon get(String source, String error, ImageSizes size, Supplier<ImageIcon> creator) {
+        Key key = new Key(source, error, size);
+        synchronized (this) {
+            ImageIcon icon = icons.get(key);
+            if (icon != null) {
+                hits++;
+                return icon;
+            }
+            misses++;
+        }
+        // Creating an icon may read files or download, so other icons are not blocked
+        ImageIcon icon = creator.get();
+        if (icon == null) {
+            return null;
+        }
+        synchronized (this) {
+            ImageIcon existing = icons.putIfAbsent(key, icon);
+            return existing == null ? icon : existing;
+        }
+    }
+
+    /**
+     * Remove all icons from the cache. The statistics are kept.
+     */
+    public synchronized void clear() {
+        icons.clear();
+    }
+
+    /**
+     * @return The number of icons currently cached
+     */
+    public synchronized int size() {
+        return icons.size();
+    }
+
+    /**
+     * @return The number of requests answered from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of requests that had to create an icon
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The number of icons removed to stay within the capacity
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private static final class Key {
+        private final String source;
+        private final String error;
+        private final ImageSizes size;
+
+        Key(String source, String error, ImageSizes size) {
+            this.source = source;
+            this.error = error;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return size == other.size && Objects.equals(source, other.source) && Objects.equals(error, other.error);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, error, size);
+        }
+    }
+}
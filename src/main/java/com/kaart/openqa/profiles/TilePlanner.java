@@ -0,0 +1,248 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openstreetmap.josm.data.Bounds;
+
+/**
+ * Plans downloads on a fixed grid of tiles. Requested areas are snapped to the
+ * tiles that cover them, so overlapping or nearly identical areas result in the
+ * same requests (and the same cache files). Tiles that were downloaded recently
+ * are skipped.
+ * <p>
+ * The grid has several levels, each with half the tile size of the level above
+ * it. An area is snapped to the level with tiles about as large as the area, so
+ * that small areas are not padded with much larger tiles. A tile is also fresh
+ * when a larger tile that contains it is fresh.
+ */
+public class TilePlanner {
+    /**
+     * Areas that would need more tiles than this are requested as they are, and
+     * are only fresh for the same area
+     */
+    public static final int MAX_TILES_PER_AREA = 64;
+    /** The number of levels below the largest tiles */
+    public static final int MAX_LEVEL = 10;
+
+    private final double tileSize;
+    private final long maxAge;
+    private final Map<Tile, Long> downloaded = new ConcurrentHashMap<>();
+    /** Tiles that were planned, and not downloaded or forgotten since */
+    private final Set<Tile> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Create a new planner
+     *
+     * @param tileSize The width and height of the largest tiles in degrees
+     * @param maxAge   The time in milliseconds that a downloaded tile stays fresh
+     */
+    public TilePlanner(double tileSize, long maxAge) {
+        this.tileSize = tileSize;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Get the areas that need to be downloaded
+     *
+     * @param requested The areas that errors are wanted for
+     * @param variant   What is downloaded for the areas (usually the list of
+     *                  enabled errors). Tiles are only fresh for the same variant.
+     * @return The tiles (and oversized areas) that are not fresh, without
+     *         duplicates
+     */
+    public List<Bounds> plan(List<Bounds> requested, String variant) {
+        Map<Tile, Bounds> planned = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        downloaded.values().removeIf(time -> now - time >= maxAge);
+        for (Bounds bound : requested) {
+            int level = getLevel(bound);
+            int minX = index(bound.getMinLon(), level);
+            int maxX = index(bound.getMaxLon(), level);
+            int minY = index(bound.getMinLat(), level);
+            int maxY = index(bound.getMaxLat(), level);
+            if ((long) (maxX - minX + 1) * (maxY - minY + 1) > MAX_TILES_PER_AREA) {
+                Tile area = new Tile(variant, bound);
+                if (!planned.containsKey(area) && !isFresh(area, now)) {
+                    planned.put(area, bound);
+                }
+                continue;
+            }
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    Tile tile = new Tile(variant, level, x, y);
+                    if (!planned.containsKey(tile) && !isFresh(tile, now)) {
+                        planned.put(tile, getBounds(tile));
+                    }
+                }
+            }
+        }
+        pending.addAll(planned.keySet());
+        return new ArrayList<>(planned.values());
+    }
+
+    /**
+     * Record that an area was downloaded. Only areas returned by
+     * {@link #plan(List, String)} are recorded, and only if they were not
+     * forgotten with {@link #markStale(List)} since.
+     *
+     * @param bound   The area that was downloaded
+     * @param variant What was downloaded for the area
+     */
+    public void markFresh(Bounds bound, String variant) {
+        Tile tile = getTile(bound, variant);
+        if (pending.remove(tile)) {
+            downloaded.put(tile, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Forget that areas were downloaded, so that they are planned again
+     *
+     * @param bounds The areas to forget
+     */
+    public void markStale(List<Bounds> bounds) {
+        for (Bounds bound : bounds) {
+            downloaded.keySet().removeIf(tile -> getBounds(tile).equals(bound));
+            pending.removeIf(tile -> getBounds(tile).equals(bound));
+        }
+    }
+
+    /**
+     * Forget all downloaded areas
+     */
+    public void markStale() {
+        downloaded.clear();
+        pending.clear();
+    }
+
+    private boolean isFresh(Tile tile, long now) {
+        if (tile.area != null) {
+            Long time = downloaded.get(tile);
+            return time != null && now - time < maxAge;
+        }
+        for (int up = 0; up <= tile.level; up++) {
+            Long time = downloaded.get(new Tile(tile.variant, tile.level - up, tile.x >> up, tile.y >> up));
+            if (time != null && now - time < maxAge) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the level with the smallest tiles that are at least half as large as
+     * an area, so that the area is covered by at most three tiles in each
+     * direction
+     *
+     * @param bound The area
+     * @return The level
+     */
+    private int getLevel(Bounds bound) {
+        double extent = Math.max(bound.getWidth(), bound.getHeight());
+        if (extent <= 0) {
+            return MAX_LEVEL;
+        }
+        int level = (int) Math.floor(Math.log(2 * tileSize / extent) / Math.log(2));
+        return Math.max(0, Math.min(MAX_LEVEL, level));
+    }
+
+    /**
+     * Get the tile of an area that was planned
+     *
+     * @param bound   The area
+     * @param variant What is downloaded for the area
+     * @return The tile with the bounds of the area, or the key of the oversized
+     *         area if there is no such tile
+     */
+    private Tile getTile(Bounds bound, String variant) {
+        double height = bound.getHeight();
+        int level = height <= 0 ? -1 : (int) Math.round(Math.log(tileSize / height) / Math.log(2));
+        if (level >= 0 && level <= MAX_LEVEL) {
+            Tile tile = new Tile(variant, level, index(bound.getCenter().lon(), level),
+                    index(bound.getCenter().lat(), level));
+            if (getBounds(tile).equals(bound)) {
+                return tile;
+            }
+        }
+        return new Tile(variant, bound);
+    }
+
+    private double getTileSize(int level) {
+        return tileSize / (1 << level);
+    }
+
+    private int index(double coordinate, int level) {
+        return (int) Math.floor(coordinate / getTileSize(level));
+    }
+
+    private Bounds getBounds(Tile tile) {
+        if (tile.area != null) {
+            return tile.area;
+        }
+        double size = getTileSize(tile.level);
+        return new Bounds(clamp(tile.y * size, 90), clamp(tile.x * size, 180),
+                clamp((tile.y + 1) * size, 90), clamp((tile.x + 1) * size, 180));
+    }
+
+    /**
+     * Clamp a coordinate to the world and round it, so that the same tile always
+     * results in the same request URL
+     *
+     * @param coordinate The coordinate
+     * @param max        The maximum absolute value of the coordinate
+     * @return The clamped and rounded coordinate
+     */
+    private static double clamp(double coordinate, double max) {
+        return Math.max(-max, Math.min(max, Math.round(coordinate * 1e7) / 1e7));
+    }
+
+    /**
+     * A tile of the grid, or an oversized area that is requested as it is
+     */
+    private static final class Tile {
+        private final String variant;
+        private final int level;
+        private final int x;
+        private final int y;
+        private final Bounds area;
+
+        Tile(String variant, int level, int x, int y) {
+            this.variant = variant;
+            this.level = level;
+            this.x = x;
+            this.y = y;
+            this.area = null;
+        }
+
+        Tile(String variant, Bounds area) {
+            this.variant = variant;
+            this.level = -1;
+            this.x = 0;
+            this.y = 0;
+            this.area = area;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Tile))
+                return false;
+            Tile other = (Tile) obj;
+            return level == other.level && x == other.x && y == other.y && Objects.equals(variant, other.variant)
+                    && Objects.equals(area, other.area);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(variant, level, x, y, area);
+        }
+    }
+}
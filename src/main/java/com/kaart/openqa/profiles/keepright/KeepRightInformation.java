@@ -6,7 +6,9 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 import java.awt.event.ActionEvent;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.NavigableMap;
 import java.util.TreeMap;
@@ -19,7 +21,6 @@ import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
-import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.io.XmlWriter;
 import org.openstreetmap.josm.spi.preferences.Config;
@@ -166,53 +167,27 @@ public class KeepRightInformation extends GenericInformation {
             Logging.error(e);
             cache = GenericInformation.getFile(url, formats.get(type), cacheDir);
         }
-        cache.setDeleteOnExit(true);
+        cache.setCompressed(true);
         return cache;
     }
 
-    private DataSet getGeoJsonErrors(Bounds bound) {
+    @Override
+    protected DataSet getGeoJsonErrors(Bounds bound) {
         CachedFile cache = getFile("geojson", bound);
-        DataSet ds = new DataSet();
-        try {
-            ds = GeoJsonReader.parseDataSet(cache.getInputStream(), null);
+        try (InputStream stream = cache.getInputStream()) {
+            DataSet ds = GeoJsonReader.parseDataSet(stream, null);
             for (OsmPrimitive osmPrimitive : ds.allPrimitives()) {
                 osmPrimitive.setOsmId(Long.parseLong(osmPrimitive.get(ERROR_ID)), 1);
             }
+            return ds;
         } catch (IllegalDataException | IOException e) {
             Logging.error(e);
+            return null;
         }
-        return ds;
-    }
-
-    @Override
-    public DataSet getErrors(List<Bounds> bounds, ProgressMonitor inMonitor) {
-        ProgressMonitor monitor = inMonitor.createSubTaskMonitor(0, false);
-        monitor.beginTask(tr("Getting {0} errors", getName()));
-        DataSet returnDataSet = null;
-        String windowTitle = tr("Updating {0} information", getName());
-        if (bounds.size() > 10) {
-            monitor.subTask(windowTitle);
-            monitor.setTicksCount(bounds.size());
-            monitor.setTicks(0);
-        } else {
-            monitor.indeterminateSubTask(windowTitle);
-        }
-        for (Bounds bound : bounds) {
-            if (monitor.isCanceled())
-                break;
-            DataSet ds = getGeoJsonErrors(bound);
-            if (returnDataSet == null) {
-                returnDataSet = ds;
-            } else {
-                returnDataSet.mergeFrom(ds, monitor.createSubTaskMonitor(1, false));
-            }
-        }
-        monitor.finishTask();
-        return returnDataSet;
     }
 
     @Override
-    public ImageIcon getIcon(String errorValue, ImageSizes size) {
+    protected ImageIcon createIcon(String errorValue, ImageSizes size) {
         try {
             String realErrorValue = "";
             try {
@@ -229,22 +204,34 @@ public class KeepRightInformation extends GenericInformation {
             image.close();
             return icon;
         } catch (NullPointerException | IOException e) {
-            return super.getIcon("-1", size);
+            return super.createIcon("-1", size);
         }
     }
 
     @Override
     public String buildDownloadErrorList() {
-        StringBuilder list = new StringBuilder();
-        List<String> enabled = Config.getPref()
+        return String.join(",", getEnabledErrors());
+    }
+
+    /**
+     * Get the enabled errors
+     *
+     * @return The codes of the enabled errors
+     */
+    public List<String> getEnabledErrors() {
+        return Config.getPref()
                 .getList(OpenQA.PREF_PREFIX.concat(getName().toLowerCase()).concat("-tests"), buildDefaultPref());
-        for (int i = 0; i < enabled.size(); i++) {
-            list.append(enabled.get(i));
-            if (i < enabled.size() - 1) {
-                list.append(",");
-            }
-        }
-        return list.toString();
+    }
+
+    /**
+     * Get the codes of all errors
+     *
+     * @return The codes, in ascending numeric order
+     */
+    static List<String> getCodes() {
+        List<String> codes = new ArrayList<>(errors.keySet());
+        codes.sort(Comparator.comparingInt(Integer::parseInt));
+        return codes;
     }
 
     @Override
@@ -290,8 +277,8 @@ public class KeepRightInformation extends GenericInformation {
 
             @Override
             public void actionPerformed(ActionEvent e) {
-                new SendInformation(String.format(COMMENT_URL, FIXED, "", node.get("schema"), node.get(ERROR_ID)),
-                        cacheDir).run();
+                sendInformation(node.get("schema") + "-" + node.get(ERROR_ID),
+                        String.format(COMMENT_URL, FIXED, "", node.get("schema"), node.get(ERROR_ID)));
                 node.put("actionTaken", "true");
                 fixed.setEnabled(false);
                 falsePositive.setEnabled(true);
@@ -306,9 +293,8 @@ public class KeepRightInformation extends GenericInformation {
 
             @Override
             public void actionPerformed(ActionEvent e) {
-                new SendInformation(
-                        String.format(COMMENT_URL, FALSE_POSITIVE, "", node.get("schema"), node.get(ERROR_ID)),
-                        cacheDir).run();
+                sendInformation(node.get("schema") + "-" + node.get(ERROR_ID),
+                        String.format(COMMENT_URL, FALSE_POSITIVE, "", node.get("schema"), node.get(ERROR_ID)));
                 node.put("actionTaken", "false");
                 fixed.setEnabled(true);
                 falsePositive.setEnabled(false);
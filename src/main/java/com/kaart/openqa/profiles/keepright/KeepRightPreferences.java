@@ -4,21 +4,18 @@ package com.kaart.openqa.profiles.keepright;
 import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.awt.Component;
-import java.awt.GridBagLayout;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-
-import javax.swing.JCheckBox;
-import javax.swing.JPanel;
-import javax.swing.JScrollPane;
+import java.util.Map;
 
 import org.openstreetmap.josm.gui.preferences.PreferenceTabbedPane;
 import org.openstreetmap.josm.gui.preferences.TabPreferenceSetting;
-import org.openstreetmap.josm.gui.widgets.VerticallyScrollablePanel;
 import org.openstreetmap.josm.spi.preferences.Config;
-import org.openstreetmap.josm.tools.GBC;
 
 import com.kaart.openqa.OpenQA;
+import com.kaart.openqa.profiles.ErrorSelection;
+import com.kaart.openqa.profiles.ErrorSelectionPanel;
 import com.kaart.openqa.profiles.ProfilePreferences;
 
 /**
@@ -27,8 +24,6 @@ import com.kaart.openqa.profiles.ProfilePreferences;
  */
 public class KeepRightPreferences extends ProfilePreferences {
 
-    JPanel testPanel;
-
     final String cacheDir;
     static final String PREF_TESTS = "openqa.keepright-tests";
 
@@ -44,35 +39,11 @@ public class KeepRightPreferences extends ProfilePreferences {
 
     @Override
     public boolean ok() {
+        if (!selection.isLoaded())
+            return false;
         ArrayList<String> prefs = new ArrayList<>();
         prefs.add("0");
-        ArrayList<String> values = new ArrayList<>(KeepRightInformation.errors.keySet());
-        for (Component component : testPanel.getComponents()) {
-            if (!(component instanceof JCheckBox))
-                continue;
-            JCheckBox preference = (JCheckBox) component;
-            if (preference.isSelected()) {
-                String[] parts = preference.getText().split("/");
-                for (String value : values) {
-                    boolean toBreak = false;
-                    if (parts.length == 1 && KeepRightInformation.errors.get(value).equals(parts[0])) {
-                        prefs.add(value);
-                        toBreak = true;
-                    } else if (parts.length == 2 && KeepRightInformation.errors.get(value).equals(parts[0])) {
-                        for (int i = 0; i < 10; i++) {
-                            String toGet = Integer.toString(Integer.parseInt(value) + i);
-                            if (parts[1].equals(KeepRightInformation.errors.get(toGet))) {
-                                prefs.add(toGet);
-                                break;
-                            }
-                        }
-                        toBreak = true;
-                    }
-                    if (toBreak)
-                        break;
-                }
-            }
-        }
+        prefs.addAll(selection.getSelectedCodes());
         Config.getPref().putList(PREF_TESTS, prefs);
         return false;
     }
@@ -84,32 +55,33 @@ public class KeepRightPreferences extends ProfilePreferences {
 
     @Override
     public Component createSubTab() {
-        testPanel = new VerticallyScrollablePanel(new GridBagLayout());
-        KeepRightInformation info = new KeepRightInformation(cacheDir);
-        ArrayList<String> prefs = new ArrayList<>(Config.getPref().getList(PREF_TESTS, info.buildDefaultPref()));
-        for (String error : KeepRightInformation.errors.keySet()) {
+        ErrorSelectionPanel panel = new ErrorSelectionPanel(selection);
+        panel.load(KeepRightPreferences::getEntries, () -> new KeepRightInformation(cacheDir).getEnabledErrors());
+        return panel;
+    }
+
+    /**
+     * Get the errors, with each error whose code is not a multiple of ten in the
+     * group of the error that it refines
+     *
+     * @return The errors
+     */
+    private static List<ErrorSelection.Entry> getEntries() {
+        List<ErrorSelection.Entry> entries = new ArrayList<>();
+        Map<Integer, ErrorSelection.Entry> groups = new HashMap<>();
+        for (String error : KeepRightInformation.getCodes()) {
             if ("0".equals(error))
                 continue;
-            boolean checked = false;
-            if (prefs.contains(error)) {
-                checked = true;
-            }
-            String errorMessage = "";
-            String baseMessage = "";
-            if (Integer.parseInt(error) % 10 == 0) {
-                errorMessage = KeepRightInformation.errors.get(error);
+            int code = Integer.parseInt(error);
+            ErrorSelection.Entry entry = new ErrorSelection.Entry(error, KeepRightInformation.errors.get(error));
+            ErrorSelection.Entry group = groups.get(code / 10);
+            if (code % 10 != 0 && group != null) {
+                group.add(entry);
             } else {
-                errorMessage = KeepRightInformation.errors.get(Integer.toString((Integer.parseInt(error) / 10) * 10));
-                baseMessage = errorMessage.trim();
-                errorMessage += "/" + KeepRightInformation.errors.get(error);
+                groups.put(code / 10, entry);
+                entries.add(entry);
             }
-            JCheckBox toAdd = new JCheckBox(tr(errorMessage), checked);
-            List<JCheckBox> list = (checkBoxes.get(baseMessage) != null) ? checkBoxes.get(baseMessage)
-                    : new ArrayList<>();
-            list.add(toAdd);
-            checkBoxes.put(baseMessage, list);
-            testPanel.add(toAdd, GBC.eol());
         }
-        return new JScrollPane(testPanel);
+        return entries;
     }
 }
@@ -0,0 +1,236 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles.osmose;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+import com.kaart.openqa.CachedFile;
+import com.kaart.openqa.profiles.GenericInformation;
+
+/**
+ * The items and categories that Osmose checks for. The catalogue is parsed
+ * once per locale and kept in memory. Once it is older than
+ * {@link GenericInformation#MAX_AGE}, it is refreshed in the background while
+ * the old catalogue is still used.
+ */
+final class OsmoseCatalogue {
+    /** The time in milliseconds after which a catalogue that could not be downloaded is tried again */
+    private static final long RETRY_DELAY = TimeUnit.MINUTES.toMillis(5);
+
+    private static final Map<String, OsmoseCatalogue> CATALOGUES = new ConcurrentHashMap<>();
+    /** The first downloads of catalogues, by locale */
+    private static final Map<String, FutureTask<OsmoseCatalogue>> LOADING = new ConcurrentHashMap<>();
+    private static final Set<String> REFRESHING = ConcurrentHashMap.newKeySet();
+    private static final ExecutorService REFRESHER = Executors
+            .newSingleThreadExecutor(Utils.newThreadFactory("openqa-osmose-catalogue-%d", Thread.MIN_PRIORITY));
+
+    private final NavigableMap<String, String> errors;
+    private final NavigableMap<String, NavigableMap<String, NavigableMap<String, String>>> categories;
+    private final long expires;
+
+    private OsmoseCatalogue(NavigableMap<String, String> errors,
+            NavigableMap<String, NavigableMap<String, NavigableMap<String, String>>> categories, long expires) {
+        this.errors = Collections.unmodifiableNavigableMap(errors);
+        this.categories = Collections.unmodifiableNavigableMap(categories);
+        this.expires = expires;
+    }
+
+    /**
+     * Get the catalogue for a locale. The first call for a locale downloads the
+     * catalogue without blocking callers for other locales; later calls return
+     * immediately.
+     *
+     * @param locale   The Osmose locale
+     * @param cacheDir The directory to cache the catalogue in
+     * @return The catalogue
+     */
+    static OsmoseCatalogue get(String locale, String cacheDir) {
+        OsmoseCatalogue catalogue = CATALOGUES.get(locale);
+        if (catalogue == null) {
+            catalogue = loadFirst(locale, cacheDir);
+        } else if (catalogue.expires < System.currentTimeMillis() && REFRESHING.add(locale)) {
+            OsmoseCatalogue old = catalogue;
+            REFRESHER.execute(() -> {
+                try {
+                    CATALOGUES.put(locale, load(locale, cacheDir));
+                } catch (IOException | JsonException e) {
+                    Logging.debug(e.getMessage());
+                    CATALOGUES.put(locale, old.retryLater());
+                } finally {
+                    REFRESHING.remove(locale);
+                }
+            });
+        }
+        return catalogue;
+    }
+
+    /**
+     * Download the catalogue for a locale that has not been loaded yet. Only the
+     * first caller for a locale downloads it, and other callers for the same
+     * locale wait for that download.
+     *
+     * @param locale   The Osmose locale
+     * @param cacheDir The directory to cache the catalogue in
+     * @return The catalogue
+     */
+    private static OsmoseCatalogue loadFirst(String locale, String cacheDir) {
+        FutureTask<OsmoseCatalogue> task = new FutureTask<>(() -> {
+            // The catalogue may have been loaded since it was looked up
+            OsmoseCatalogue loaded = CATALOGUES.get(locale);
+            if (loaded == null) {
+                loaded = loadOrDefault(locale, cacheDir);
+                CATALOGUES.put(locale, loaded);
+            }
+            return loaded;
+        });
+        FutureTask<OsmoseCatalogue> loading = LOADING.putIfAbsent(locale, task);
+        if (loading == null) {
+            loading = task;
+            try {
+                task.run();
+            } finally {
+                LOADING.remove(locale, task);
+            }
+        }
+        try {
+            return loading.get();
+        } catch (ExecutionException e) {
+            Logging.error(e);
+            return getDefault();
+        } catch (InterruptedException e) {
+            Logging.debug(e.getMessage());
+            Thread.currentThread().interrupt();
+            return getDefault();
+        }
+    }
+
+    /**
+     * Get the catalogue for a locale without downloading it
+     *
+     * @param locale The Osmose locale
+     * @return The catalogue, or {@code null} if it has not been loaded yet
+     */
+    static OsmoseCatalogue peek(String locale) {
+        return CATALOGUES.get(locale);
+    }
+
+    /**
+     * Get all the possible errors
+     *
+     * @return NavigableMap&lt;String errorNumber, String errorName&gt;
+     */
+    NavigableMap<String, String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Get the errors and their categories
+     *
+     * @return NavigableMap&lt;String category_number, NavigableMap&lt;String
+     *         category, NavigableMap&lt;String errorNumber, String
+     *         errorName&gt;&gt;&gt;
+     */
+    NavigableMap<String, NavigableMap<String, NavigableMap<String, String>>> getCategories() {
+        return categories;
+    }
+
+    private OsmoseCatalogue retryLater() {
+        return new OsmoseCatalogue(errors, categories, System.currentTimeMillis() + RETRY_DELAY);
+    }
+
+    private static OsmoseCatalogue loadOrDefault(String locale, String cacheDir) {
+        try {
+            return load(locale, cacheDir);
+        } catch (IOException | JsonException e) {
+            Logging.debug(e.getMessage());
+            return getDefault();
+        }
+    }
+
+    /**
+     * @return A catalogue to use until the real one can be downloaded
+     */
+    private static OsmoseCatalogue getDefault() {
+        NavigableMap<String, String> errors = new TreeMap<>();
+        errors.put("xxxx", "All");
+        NavigableMap<String, NavigableMap<String, String>> tMap = new TreeMap<>();
+        tMap.put(tr("No categories found"), errors);
+        NavigableMap<String, NavigableMap<String, NavigableMap<String, String>>> categories = new TreeMap<>();
+        categories.put("-1", tMap);
+        return new OsmoseCatalogue(errors, categories, System.currentTimeMillis() + RETRY_DELAY);
+    }
+
+    private static OsmoseCatalogue load(String locale, String cacheDir) throws IOException {
+        // TODO move to 0.3 api
+        try (CachedFile cache = new CachedFile(MessageFormat.format(OsmoseInformation.BASE_API + "items", locale))) {
+            cache.setDestDir(cacheDir);
+            cache.setMaxAge(GenericInformation.MAX_AGE);
+            cache.setCompressed(true);
+            try (InputStream stream = cache.getInputStream(); JsonReader reader = Json.createReader(stream)) {
+                return parse(reader.readObject(), locale);
+            }
+        }
+    }
+
+    /**
+     * Build a catalogue from an {@code items} response
+     *
+     * @param items  The response
+     * @param locale The locale to use names from
+     * @return The catalogue
+     */
+    static OsmoseCatalogue parse(JsonObject items, String locale) {
+        NavigableMap<String, String> errors = new TreeMap<>();
+        NavigableMap<String, NavigableMap<String, NavigableMap<String, String>>> categories = new TreeMap<>();
+        for (JsonObject info : items.getJsonArray("categories").getValuesAs(JsonObject.class)) {
+            String category = Integer.toString(info.getInt("categ"));
+            String name = getTitle(info, locale, tr("No name for this category"));
+            NavigableMap<String, String> catErrors = new TreeMap<>();
+            JsonArray categoryItems = info.getJsonArray("items");
+            for (JsonObject item : categoryItems.getValuesAs(JsonObject.class)) {
+                String errorNumber = item.getJsonNumber("item").toString();
+                String errorName = getTitle(item, locale, tr("(name missing)"));
+                errors.put(errorNumber, errorName);
+                catErrors.put(errorNumber, errorName);
+            }
+            NavigableMap<String, NavigableMap<String, String>> tMap = new TreeMap<>();
+            tMap.put(name, catErrors);
+            categories.put(category, tMap);
+        }
+        return new OsmoseCatalogue(errors, categories,
+                System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(GenericInformation.MAX_AGE));
+    }
+
+    private static String getTitle(JsonObject object, String locale, String missing) {
+        JsonValue value = object.get("title");
+        if (value == null || value.getValueType() != JsonValue.ValueType.OBJECT) {
+            return missing;
+        }
+        JsonObject title = value.asJsonObject();
+        return title.containsKey(locale) ? title.getString(locale) : title.getString("auto", missing);
+    }
+}
@@ -6,20 +6,31 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 import java.awt.event.ActionEvent;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
 import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonObject;
-import javax.json.JsonString;
-import javax.json.JsonValue;
-import javax.json.JsonValue.ValueType;
+import javax.json.JsonException;
 import javax.json.stream.JsonParser;
 import javax.json.stream.JsonParser.Event;
 import javax.swing.AbstractAction;
@@ -30,12 +41,13 @@ import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
-import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.ImageProvider;
 import org.openstreetmap.josm.tools.ImageProvider.ImageSizes;
 import org.openstreetmap.josm.tools.LanguageInfo;
 import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
 
 import com.kaart.openqa.CachedFile;
 import com.kaart.openqa.profiles.GenericInformation;
@@ -51,8 +63,25 @@ public class OsmoseInformation extends GenericInformation {
     public static final String BASE_API = "https://osmose.openstreetmap.fr/{0}/api/0.3/";
     public static final String BASE_IMG = "https://osmose.openstreetmap.fr/images/markers/marker-b-%s.png";
     public static final String BASE_ERROR_URL = "https://osmose.openstreetmap.fr/{0}/error/";
-
-    private static final String ADDITIONAL_INFORMATION = "ADDITIONAL_INFORMATION";
+    /** The maximum number of issues requested for one area (the most the API returns) */
+    public static final int RESULT_LIMIT = 500;
+
+    /** The number of issues whose additional information is downloaded at the same time after clicks */
+    private static final int ADDITIONAL_INFORMATION_CONNECTIONS = 2;
+    /** The number of prefetches that may wait for a connection. Further prefetches are dropped. */
+    private static final int PREFETCH_QUEUE_SIZE = 32;
+
+    /** Loads additional information for issues that were clicked */
+    private static final ExecutorService ADDITIONAL_INFORMATION_LOADER = Executors.newFixedThreadPool(
+            ADDITIONAL_INFORMATION_CONNECTIONS, Utils.newThreadFactory("openqa-osmose-issue-%d", Thread.NORM_PRIORITY));
+    /** Loads additional information for issues that are likely to be clicked */
+    private static final ExecutorService ADDITIONAL_INFORMATION_PREFETCHER = new ThreadPoolExecutor(1, 1, 0L,
+            TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(PREFETCH_QUEUE_SIZE),
+            Utils.newThreadFactory("openqa-osmose-prefetch-%d", Thread.MIN_PRIORITY));
+    /** The issues whose additional information is being loaded, by id */
+    private static final Map<String, Load> LOADING = new ConcurrentHashMap<>();
+    /** The issues whose additional information could not be loaded. These are not prefetched again. */
+    private static final Set<String> FAILED = ConcurrentHashMap.newKeySet();
 
     protected static NavigableMap<String, String> formats = new TreeMap<>();
 
@@ -65,52 +94,166 @@ public class OsmoseInformation extends GenericInformation {
         return NAME;
     }
 
-    private DataSet getGeoJsonErrors(Bounds bound) {
+    @Override
+    protected int getResultLimit() {
+        return RESULT_LIMIT;
+    }
+
+    @Override
+    protected DataSet getGeoJsonErrors(Bounds bound) {
         CachedFile cache = getFile(bound);
+        DataSet ds;
+        try (InputStream stream = cache.getInputStream()) {
+            ds = parseIssues(stream);
+        } catch (IOException e) {
+            Logging.error(e);
+            ds = null;
+        }
+        cache.close();
+        return ds;
+    }
+
+    /**
+     * Parse the response of an {@code issues} request. The response is read as a
+     * stream of events, and each issue becomes a node as soon as it has been read.
+     *
+     * @param stream The response
+     * @return A new {@code DataSet} with a node for each issue
+     */
+    static DataSet parseIssues(InputStream stream) {
         DataSet ds = new DataSet();
-        try (JsonParser json = Json.createParser(cache.getInputStream())) {
+        try (JsonParser json = Json.createParser(stream)) {
+            if (!json.hasNext() || json.next() != Event.START_OBJECT) {
+                return ds;
+            }
             while (json.hasNext()) {
-                if (json.next() == Event.START_OBJECT) {
-                    JsonObject jobject = json.getObject();
-                    JsonArray errors = jobject.getJsonArray("issues");
-                    for (JsonObject error : errors.getValuesAs(JsonObject.class)) {
-                        Node node = new Node();
-                        double lat = Double.MAX_VALUE;
-                        double lon = Double.MAX_VALUE;
-                        for (Map.Entry<String, JsonValue> entry : error.entrySet()) {
-                            String field = entry.getKey();
-                            if ("lat".equals(field)) {
-                                lat = Double.parseDouble(entry.getValue().toString());
-                            } else if ("lon".equals(field)) {
-                                lon = Double.parseDouble(entry.getValue().toString());
-                            } else if (entry.getValue() instanceof JsonString) {
-                                node.put(field, ((JsonString) entry.getValue()).getString());
-                            } else {
-                                node.put(field, entry.getValue().toString());
-                            }
-                        }
-                        String id = node.get("id");
-                        node.remove("id");
-                        node.put(ERROR_ID, id);
-                        node.setCoor(new LatLon(lat, lon));
-
-                        if (!node.isOutSideWorld()) {
+                Event event = json.next();
+                if (event == Event.END_OBJECT) {
+                    break;
+                }
+                String key = json.getString();
+                Event value = json.next();
+                if ("issues".equals(key) && value == Event.START_ARRAY) {
+                    while (json.next() == Event.START_OBJECT) {
+                        Node node = parseIssue(json);
+                        if (node != null) {
                             ds.addPrimitive(node);
                         }
                     }
+                } else {
+                    readValue(json, value);
                 }
             }
-        } catch (IOException e) {
-            Logging.error(e);
         }
-        cache.close();
         return ds;
     }
 
+    /**
+     * Parse an issue. The {@code START_OBJECT} event must already have been
+     * consumed.
+     *
+     * @param json The parser
+     * @return The node for the issue, or {@code null} if it has no valid position
+     */
+    private static Node parseIssue(JsonParser json) {
+        Map<String, String> tags = new HashMap<>();
+        double lat = Double.NaN;
+        double lon = Double.NaN;
+        while (json.next() == Event.KEY_NAME) {
+            String field = json.getString().intern();
+            Event value = json.next();
+            if ("lat".equals(field) && value == Event.VALUE_NUMBER) {
+                lat = json.getBigDecimal().doubleValue();
+            } else if ("lon".equals(field) && value == Event.VALUE_NUMBER) {
+                lon = json.getBigDecimal().doubleValue();
+            } else if ("id".equals(field)) {
+                tags.put(ERROR_ID, readValue(json, value));
+            } else {
+                tags.put(field, readValue(json, value));
+            }
+        }
+        if (Double.isNaN(lat) || Double.isNaN(lon)) {
+            return null;
+        }
+        Node node = new Node(new LatLon(lat, lon));
+        if (node.isOutSideWorld()) {
+            return null;
+        }
+        node.setKeys(tags);
+        return node;
+    }
+
+    /**
+     * Read a value as a tag value. Objects and arrays are read as compact JSON.
+     *
+     * @param json  The parser
+     * @param event The event that started the value
+     * @return The value
+     */
+    private static String readValue(JsonParser json, Event event) {
+        switch (event) {
+        case VALUE_STRING:
+        case VALUE_NUMBER:
+            return json.getString();
+        case VALUE_TRUE:
+            return "true";
+        case VALUE_FALSE:
+            return "false";
+        case START_OBJECT:
+        case START_ARRAY:
+            StringBuilder sb = new StringBuilder();
+            writeStructure(json, event, sb);
+            return sb.toString();
+        default:
+            return "null";
+        }
+    }
+
+    private static void writeStructure(JsonParser json, Event start, StringBuilder sb) {
+        boolean isObject = start == Event.START_OBJECT;
+        sb.append(isObject ? '{' : '[');
+        boolean first = true;
+        for (Event event = json.next(); event != Event.END_OBJECT && event != Event.END_ARRAY; event = json.next()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            if (isObject) {
+                writeString(json.getString(), sb);
+                sb.append(':');
+                event = json.next();
+            }
+            if (event == Event.START_OBJECT || event == Event.START_ARRAY) {
+                writeStructure(json, event, sb);
+            } else if (event == Event.VALUE_STRING) {
+                writeString(json.getString(), sb);
+            } else {
+                sb.append(readValue(json, event));
+            }
+        }
+        sb.append(isObject ? '}' : ']');
+    }
+
+    private static void writeString(String string, StringBuilder sb) {
+        sb.append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
     private CachedFile getFile(Bounds bound) {
         String type = "json";
         String enabled = buildDownloadErrorList();
-        String url = getBaseApi().concat("issues?full=true").concat("&item=").concat(enabled);
+        String url = getBaseApi().concat("issues?full=true").concat("&limit=").concat(Integer.toString(RESULT_LIMIT))
+                .concat("&item=").concat(enabled);
         url = url.concat("&bbox=").concat(Double.toString(bound.getMinLon()));
         url = url.concat(",").concat(Double.toString(bound.getMinLat()));
         url = url.concat(",").concat(Double.toString(bound.getMaxLon()));
@@ -124,38 +267,10 @@ public class OsmoseInformation extends GenericInformation {
             Logging.error(e);
             cache = GenericInformation.getFile(url, formats.get(type), cacheDir);
         }
-        cache.setDeleteOnExit(true);
+        cache.setCompressed(true);
         return cache;
     }
 
-    @Override
-    public DataSet getErrors(List<Bounds> bounds, ProgressMonitor monitor) {
-        ProgressMonitor subTask = monitor.createSubTaskMonitor(0, false);
-        subTask.beginTask(tr("Getting {0} errors", NAME));
-        DataSet returnDataSet = null;
-        String windowTitle = tr("Updating {0} information", NAME);
-        if (bounds.size() > 10) {
-            subTask.subTask(windowTitle);
-            subTask.setTicksCount(bounds.size());
-            subTask.setTicks(0);
-        } else {
-            subTask.indeterminateSubTask(windowTitle);
-        }
-        for (Bounds bound : bounds) {
-            if (subTask.isCanceled())
-                break;
-            DataSet ds = getGeoJsonErrors(bound);
-            if (ds != null) {
-                if (returnDataSet == null) {
-                    returnDataSet = ds;
-                } else {
-                    returnDataSet.mergeFrom(ds, subTask.createSubTaskMonitor(1, false));
-                }
-            }
-        }
-        return returnDataSet;
-    }
-
     @Override
     public String buildDownloadErrorList() {
         StringBuilder list = new StringBuilder();
@@ -171,57 +286,23 @@ public class OsmoseInformation extends GenericInformation {
 
     @Override
     public ArrayList<String> buildDefaultPref() {
-        ArrayList<String> rArray = new ArrayList<>();
-        for (String error : getErrors(cacheDir).keySet()) {
-            rArray.add(error);
-        }
-        return rArray;
+        return new ArrayList<>(getErrors(cacheDir).keySet());
     }
 
     /**
-     * Get all the possible errors
+     * Get all the possible errors. The errors are downloaded once and then kept
+     * in memory, see {@link OsmoseCatalogue}.
      *
      * @param cacheDir Directory to store error defaultDownloadTypes file
      * @return NavigableMap&lt;String errorNumber, String errorName&gt;
      */
     public static NavigableMap<String, String> getErrors(String cacheDir) {
-        TreeMap<String, String> tErrors = new TreeMap<>();
-
-        // TODO move to 0.3 api
-        try (CachedFile cache = new CachedFile(MessageFormat.format(BASE_API + "items", getLocale()))) {
-            cache.setDestDir(cacheDir);
-            JsonParser parser = Json.createParser(cache.getInputStream());
-            while (parser.hasNext()) {
-                if (parser.next() == Event.START_OBJECT) {
-                    JsonObject value = parser.getValue().asJsonObject();
-                    JsonArray categories = value.getJsonArray("categories");
-                    for (JsonObject category : categories.getValuesAs(JsonObject.class)) {
-                        JsonArray items = category.getJsonArray("items");
-                        for (JsonObject item : items.getValuesAs(JsonObject.class)) {
-                            String errorNumber = item.getJsonNumber("item").toString();
-                            String name;
-                            if (item.get("title") == JsonValue.NULL) {
-                                name = tr("(name missing)");
-                            } else if (item.getJsonObject("title").containsKey(getLocale())) {
-                                name = item.getJsonObject("title").getString(getLocale());
-                            } else {
-                                name = item.getJsonObject("title").getString("auto");
-                            }
-                            tErrors.put(errorNumber, name);
-                        }
-                    }
-                }
-            }
-            parser.close();
-        } catch (IOException e) {
-            Logging.debug(e.getMessage());
-            tErrors.put("xxxx", "All");
-        }
-        return tErrors;
+        return OsmoseCatalogue.get(getLocale(), cacheDir).getErrors();
     }
 
     /**
-     * Get the errors and their categories
+     * Get the errors and their categories. The categories are downloaded once and
+     * then kept in memory, see {@link OsmoseCatalogue}.
      *
      * @param cacheDir directory to cache information in
      * @return NavigableMap&lt;String category_number, TreeMap&lt;String category,
@@ -229,116 +310,168 @@ public class OsmoseInformation extends GenericInformation {
      */
     public static NavigableMap<String, NavigableMap<String, NavigableMap<String, String>>> getCategories(
             String cacheDir) {
-        NavigableMap<String, NavigableMap<String, NavigableMap<String, String>>> categories = new TreeMap<>();
-        NavigableMap<String, String> errors = getErrors(cacheDir);
-        JsonParser parser = null;
-        // TODO move to 0.3 when equivalent is available
-        try (CachedFile cache = new CachedFile(MessageFormat.format(BASE_API + "items", getLocale()))) {
-            cache.setDestDir(cacheDir);
-            parser = Json.createParser(cache.getInputStream());
-            while (parser.hasNext()) {
-                if (parser.next() == Event.START_OBJECT) {
-                    JsonArray array = parser.getObject().getJsonArray("categories");
-                    for (int i = 0; i < array.size(); i++) {
-                        JsonObject info = array.getJsonObject(i);
-                        String category = Integer.toString(info.getInt("categ"));
-                        final String name;
-                        if (!info.containsKey("title")) {
-                            name = tr("No name for this category");
-                        } else if (info.getJsonObject("title").containsKey(getLocale())) {
-                            name = info.getJsonObject("title").getString(getLocale());
-                        } else {
-                            name = info.getJsonObject("title").getString("auto");
-                        }
-                        TreeMap<String, String> catErrors = new TreeMap<>();
-                        JsonArray items = info.getJsonArray("items");
-                        for (int j = 0; j < items.size(); j++) {
-                            JsonObject item = items.getJsonObject(j);
-                            String nItem = Integer.toString(item.getInt("item"));
-                            catErrors.put(nItem, errors.get(nItem));
-                        }
-                        NavigableMap<String, NavigableMap<String, String>> tMap = new TreeMap<>();
-                        tMap.put(name, catErrors);
-                        categories.put(category, tMap);
-                    }
-                }
+        return OsmoseCatalogue.get(getLocale(), cacheDir).getCategories();
+    }
+
+    /**
+     * Start loading the additional information for a node, unless it is already
+     * being loaded. If it is waiting for a prefetch and the executor is the one
+     * for clicks, it is queued there as well, and whichever job starts first
+     * loads it.
+     *
+     * @param node     The node to load information for
+     * @param executor The executor to load the information with
+     * @return A future that completes on the EDT once the information has been
+     *         added to the node, or {@code null} if the executor is busy
+     */
+    private CompletableFuture<Void> loadAdditionalInformation(Node node, Executor executor) {
+        String id = node.get(ERROR_ID);
+        boolean interactive = executor == ADDITIONAL_INFORMATION_LOADER;
+        Load created = new Load(interactive);
+        Load loading = LOADING.putIfAbsent(id, created);
+        if (loading != null) {
+            if (interactive && !loading.claimed.get() && loading.interactive.compareAndSet(false, true)) {
+                ADDITIONAL_INFORMATION_LOADER.execute(() -> load(node, id, loading));
             }
-        } catch (IOException e) {
-            Logging.debug(e.getMessage());
-            NavigableMap<String, NavigableMap<String, String>> tMap = new TreeMap<>();
-            tMap.put(tr("No categories found"), errors);
-            categories.put("-1", tMap);
-        } finally {
-            if (parser != null)
-                parser.close();
+            return loading.future;
+        }
+        try {
+            executor.execute(() -> load(node, id, created));
+        } catch (RejectedExecutionException e) {
+            LOADING.remove(id, created);
+            return null;
         }
-        return categories;
+        return created.future;
+    }
+
+    private void load(Node node, String id, Load load) {
+        if (!load.claimed.compareAndSet(false, true)) {
+            return;
+        }
+        Map<String, String> information = getAdditionalInformation(id);
+        GuiHelper.runInEDT(() -> {
+            LOADING.remove(id, load);
+            if (information == null) {
+                FAILED.add(id);
+                load.future.cancel(false);
+            } else {
+                FAILED.remove(id);
+                Map<String, String> keys = node.getKeys();
+                keys.putAll(information);
+                Set<String> added = new TreeSet<>(information.keySet());
+                added.add(ADDITIONAL_INFORMATION);
+                keys.put(ADDITIONAL_INFORMATION, String.join(";", added));
+                node.setKeys(keys);
+                load.future.complete(null);
+            }
+        });
     }
 
     /**
-     * Get additional information in a separate thread
-     *
-     * @author Taylor Smock
+     * The loading of the additional information of an issue. It may be queued on
+     * both executors, but is only loaded by the job that claims it first.
      */
-    private static class AdditionalInformation implements Runnable {
-        Node node;
+    private static final class Load {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final AtomicBoolean interactive;
 
-        AdditionalInformation(Node node) {
-            this.node = node;
+        Load(boolean interactive) {
+            this.interactive = new AtomicBoolean(interactive);
         }
+    }
 
-        @Override
-        public void run() {
-            JsonParser parser = null;
-            try (CachedFile cache = new CachedFile(getBaseApiReal() + "issue/" + node.get(ERROR_ID))) {
-                cache.setDeleteOnExit(true);
-                parser = Json.createParser(cache.getContentReader());
-                while (parser.hasNext()) {
-                    if (parser.next() == Event.START_OBJECT) {
-                        JsonObject info = parser.getObject();
-                        for (Map.Entry<String, JsonValue> entry : info.entrySet()) {
-                            String key = entry.getKey();
-                            JsonValue value = entry.getValue();
-                            if ("elems".equals(key))
-                                continue;// TODO actually deal with it in json format...
-                            if (value.getValueType() == ValueType.STRING) {
-                                node.put(key, info.getString(key));
-                            } else {
-                                node.put(key, value.toString());
-                            }
-                        }
-                    }
-                }
-                node.put(ADDITIONAL_INFORMATION, "true");
-            } catch (IOException e) {
-                Logging.debug(e.getMessage());
-            } finally {
-                if (parser != null)
-                    parser.close();
+    /**
+     * Download the additional information for an issue. The response is kept
+     * with the other data files, so that it is bounded by the cache size.
+     *
+     * @param id The id of the issue
+     * @return The additional information, or {@code null} if it could not be
+     *         downloaded
+     */
+    private Map<String, String> getAdditionalInformation(String id) {
+        try (CachedFile cache = new CachedFile(getBaseApiReal() + "issue/" + id)) {
+            if (cacheDir != null) {
+                cache.setDestDir(new File(cacheDir, DATA_SUB_DIR).getPath());
             }
-            synchronized (this) {
-                notifyAll();
+            try (InputStream stream = cache.getInputStream()) {
+                return parseAdditionalInformation(stream);
             }
+        } catch (IOException | JsonException e) {
+            Logging.debug(e.getMessage());
+            return null;
         }
     }
 
-    private static void getAdditionalInformation(Node node) {
-        if (!node.hasKey(ADDITIONAL_INFORMATION) || !node.get(ADDITIONAL_INFORMATION).equals("true")) {
-            AdditionalInformation info = new AdditionalInformation(node);
-            info.run();
+    /**
+     * Parse the response of an {@code issue} request
+     *
+     * @param stream The response
+     * @return The fields of the issue as tags
+     */
+    static Map<String, String> parseAdditionalInformation(InputStream stream) {
+        Map<String, String> information = new HashMap<>();
+        try (JsonParser json = Json.createParser(stream)) {
+            if (!json.hasNext() || json.next() != Event.START_OBJECT) {
+                return information;
+            }
+            while (json.next() == Event.KEY_NAME) {
+                String key = json.getString().intern();
+                String value = readValue(json, json.next());
+                if (!"elems".equals(key)) { // TODO actually deal with it in json format...
+                    information.put(key, value);
+                }
+            }
         }
+        return information;
+    }
+
+    private static boolean hasAdditionalInformation(Node node) {
+        return node.hasKey(ADDITIONAL_INFORMATION) || !node.hasKey(ERROR_ID);
     }
 
     @Override
-    public boolean cacheAdditionalInformation(Node node) {
-        getAdditionalInformation(node);
-        return true;
+    public boolean cacheAdditionalInformation(Node node, Runnable onLoaded) {
+        if (hasAdditionalInformation(node)) {
+            return true;
+        }
+        CompletableFuture<Void> loading = loadAdditionalInformation(node, ADDITIONAL_INFORMATION_LOADER);
+        if (loading != null && onLoaded != null) {
+            loading.thenRun(onLoaded);
+        }
+        return false;
+    }
+
+    @Override
+    public void prefetchAdditionalInformation(Collection<Node> nodes) {
+        for (Node node : nodes) {
+            if (!hasAdditionalInformation(node) && !FAILED.contains(node.get(ERROR_ID))
+                    && loadAdditionalInformation(node, ADDITIONAL_INFORMATION_PREFETCHER) == null) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Get the title of an issue. Issues without a title use the name of their
+     * item from the catalogue, if it has been loaded.
+     *
+     * @param node The issue
+     * @return The title
+     */
+    private static String getTitle(Node node) {
+        String title = node.get("title");
+        OsmoseCatalogue catalogue = OsmoseCatalogue.peek(getLocale());
+        if (title == null && catalogue != null) {
+            title = catalogue.getErrors().get(node.get("item"));
+        }
+        return title == null ? node.get("item") : title;
     }
 
     @Override
     public String getNodeToolTip(Node node) {
         StringBuilder sb = new StringBuilder("<html>");
-        sb.append(tr(NAME)).append(": ").append(node.get("title")).append(" - <a href=").append(getBaseErrorUrl())
+        sb.append(tr(NAME)).append(": ").append(getTitle(node)).append(" - <a href=").append(getBaseErrorUrl())
                 .append(node.get(ERROR_ID)).append('>').append(node.get(ERROR_ID)).append("</a>");
 
         sb.append("<hr/>");
@@ -407,7 +540,7 @@ public class OsmoseInformation extends GenericInformation {
 
             @Override
             public void actionPerformed(ActionEvent e) {
-                new SendInformation(apiUrl.concat("done"), cacheDir).run();
+                sendInformation(node.get(ERROR_ID), apiUrl.concat("done"));
                 node.put(actionTaken, sTrue);
                 fixed.setEnabled(false);
                 falsePositive.setEnabled(true);
@@ -422,7 +555,7 @@ public class OsmoseInformation extends GenericInformation {
 
             @Override
             public void actionPerformed(ActionEvent e) {
-                new SendInformation(apiUrl.concat(sFalse), cacheDir).run();
+                sendInformation(node.get(ERROR_ID), apiUrl.concat(sFalse));
                 node.put(actionTaken, sFalse);
                 fixed.setEnabled(true);
                 falsePositive.setEnabled(false);
@@ -450,7 +583,7 @@ public class OsmoseInformation extends GenericInformation {
     }
 
     @Override
-    public ImageIcon getIcon(String errorValue, ImageSizes size) {
+    protected ImageIcon createIcon(String errorValue, ImageSizes size) {
         try {
             ImageIcon icon;
             if ("fixed".equals(errorValue)) {
@@ -468,7 +601,7 @@ public class OsmoseInformation extends GenericInformation {
             }
             return icon;
         } catch (NullPointerException | IOException e) {
-            return super.getIcon("-1", size);
+            return super.createIcon("-1", size);
         }
     }
 
@@ -4,26 +4,18 @@ package com.kaart.openqa.profiles.osmose;
 import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.awt.Component;
-import java.awt.GridBagLayout;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
-import java.util.TreeMap;
-
-import javax.swing.JCheckBox;
-import javax.swing.JLabel;
-import javax.swing.JPanel;
-import javax.swing.JScrollPane;
 
 import org.openstreetmap.josm.gui.preferences.PreferenceTabbedPane;
 import org.openstreetmap.josm.gui.preferences.TabPreferenceSetting;
-import org.openstreetmap.josm.gui.widgets.VerticallyScrollablePanel;
 import org.openstreetmap.josm.spi.preferences.Config;
-import org.openstreetmap.josm.tools.GBC;
-import org.openstreetmap.josm.tools.Logging;
 
 import com.kaart.openqa.OpenQA;
+import com.kaart.openqa.profiles.ErrorSelection;
+import com.kaart.openqa.profiles.ErrorSelectionPanel;
 import com.kaart.openqa.profiles.ProfilePreferences;
 
 /**
@@ -31,8 +23,6 @@ import com.kaart.openqa.profiles.ProfilePreferences;
  *
  */
 public class OsmosePreferences extends ProfilePreferences {
-    JPanel testPanel;
-
     final String cacheDir;
     static final String PREF_TESTS = "openqa.osmose-tests";
 
@@ -48,39 +38,9 @@ public class OsmosePreferences extends ProfilePreferences {
 
     @Override
     public boolean ok() {
-        ArrayList<String> prefs = new ArrayList<>();
-        NavigableMap<String, NavigableMap<String, NavigableMap<String, String>>> categories = OsmoseInformation
-                .getCategories(cacheDir);
-        NavigableMap<String, String> errors = new TreeMap<>();
-        for (NavigableMap<String, NavigableMap<String, String>> value : categories.values()) {
-            value.values().forEach(errors::putAll);
-        }
-        String category = "";
-        for (Component component : testPanel.getComponents()) {
-            if (component instanceof JLabel) {
-                JLabel label = (JLabel) component;
-                category = label.getText();
-                for (NavigableMap<String, NavigableMap<String, String>> descriptiveCategory : categories.values()) {
-                    if (descriptiveCategory.keySet().contains(category)) {
-                        errors = descriptiveCategory.get(category);
-                        Logging.info("Category: {0}", category);
-                        break;
-                    }
-                }
-            }
-            if (!(component instanceof JCheckBox) || (component instanceof JLabel))
-                continue;
-            JCheckBox preference = (JCheckBox) component;
-            if (preference.isSelected()) {
-                for (Map.Entry<String, String> entry : errors.entrySet()) {
-                    if (preference.getText().equals(entry.getValue())) {
-                        prefs.add(entry.getKey());
-                        break;
-                    }
-                }
-            }
-        }
-        Config.getPref().putList(PREF_TESTS, prefs);
+        if (!selection.isLoaded())
+            return false;
+        Config.getPref().putList(PREF_TESTS, selection.getSelectedCodes());
         return false;
     }
 
@@ -91,34 +51,27 @@ public class OsmosePreferences extends ProfilePreferences {
 
     @Override
     public Component createSubTab() {
-        testPanel = new VerticallyScrollablePanel(new GridBagLayout());
-        OsmoseInformation info = new OsmoseInformation(cacheDir);
-        ArrayList<String> prefs = new ArrayList<>(Config.getPref().getList(PREF_TESTS, info.buildDefaultPref()));
+        ErrorSelectionPanel panel = new ErrorSelectionPanel(selection);
+        panel.load(() -> getEntries(cacheDir),
+                () -> Config.getPref().getList(PREF_TESTS, new OsmoseInformation(cacheDir).buildDefaultPref()));
+        return panel;
+    }
+
+    private static List<ErrorSelection.Entry> getEntries(String cacheDir) {
+        List<ErrorSelection.Entry> entries = new ArrayList<>();
         NavigableMap<String, NavigableMap<String, NavigableMap<String, String>>> errors = OsmoseInformation
                 .getCategories(cacheDir);
         for (Map.Entry<String, NavigableMap<String, NavigableMap<String, String>>> entry : errors.entrySet()) {
             String categoryNumber = entry.getKey();
-            for (String category : entry.getValue().keySet()) {
-                JLabel label = new JLabel(category + " (" + categoryNumber + ")");
-                testPanel.add(label, GBC.eol());
-                Logging.info("Category: {0} {1}", category, categoryNumber);
-                for (String errorNumber : errors.get(categoryNumber).get(category).keySet()) {
-                    String baseMessage = "";
-                    boolean checked = false;
-                    if (prefs.contains(errorNumber)) {
-                        checked = true;
-                    }
-                    String errorMessage = errors.get(categoryNumber).get(category).get(errorNumber);
-                    JCheckBox toAdd = new JCheckBox(tr(errorMessage), checked);
-                    List<JCheckBox> list = (checkBoxes.get(baseMessage) != null) ? checkBoxes.get(baseMessage)
-                            : new ArrayList<>();
-                    list.add(toAdd);
-                    checkBoxes.put(baseMessage, list);
-                    testPanel.add(toAdd, GBC.std().fill(GBC.HORIZONTAL));
-                    testPanel.add(new JLabel(errorNumber), GBC.eol());
+            for (Map.Entry<String, NavigableMap<String, String>> category : entry.getValue().entrySet()) {
+                ErrorSelection.Entry group = new ErrorSelection.Entry(null,
+                        category.getKey() + " (" + categoryNumber + ")");
+                for (Map.Entry<String, String> error : category.getValue().entrySet()) {
+                    group.add(new ErrorSelection.Entry(error.getKey(), error.getValue()));
                 }
+                entries.add(group);
             }
         }
-        return new JScrollPane(testPanel);
+        return entries;
     }
 }
@@ -0,0 +1,146 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+import org.openstreetmap.josm.tools.Utils;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+
+class CachedFileTest {
+    @RegisterExtension
+    static JOSMTestRules rule = new JOSMTestRules().preferences();
+
+    private static final String PATH = "/errors.json";
+
+    @TempDir
+    File directory;
+
+    private WireMockServer server;
+
+    @BeforeEach
+    void setUp() {
+        server = new WireMockServer(options().dynamicPort());
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    private CachedFile cachedFile(boolean compressed) {
+        CachedFile file = new CachedFile(server.url(PATH));
+        file.setDestDir(directory.getPath());
+        file.setCompressed(compressed);
+        return file;
+    }
+
+    private static String read(CachedFile file) throws IOException {
+        try (InputStream stream = file.getInputStream()) {
+            return new String(Utils.readBytesFromStream(stream), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Make the cache files in the test directory stale. The cache files must be
+     * older than the expiry time, so wait for the clock to move on first.
+     */
+    private void expire() throws InterruptedException {
+        Thread.sleep(10);
+        CachedFile.expire(directory);
+    }
+
+    @Test
+    void testRevalidation() throws Exception {
+        server.stubFor(get(urlEqualTo(PATH)).atPriority(2)
+                .willReturn(aResponse().withStatus(200).withHeader("ETag", "\"1\"").withBody("first")));
+        server.stubFor(get(urlEqualTo(PATH)).atPriority(1).withHeader("If-None-Match", equalTo("\"1\""))
+                .willReturn(aResponse().withStatus(304)));
+
+        assertEquals("first", read(cachedFile(false)));
+        assertEquals(1, server.getAllServeEvents().size());
+
+        // Fresh copies are not requested again
+        assertEquals("first", read(cachedFile(false)));
+        assertEquals(1, server.getAllServeEvents().size());
+
+        // Stale copies are revalidated, and kept if they did not change
+        expire();
+        assertEquals("first", read(cachedFile(false)));
+        server.verify(1, getRequestedFor(urlEqualTo(PATH)).withHeader("If-None-Match", equalTo("\"1\"")));
+        assertEquals(2, server.getAllServeEvents().size());
+        assertEquals("first", read(cachedFile(false)));
+        assertEquals(2, server.getAllServeEvents().size());
+
+        // Changed resources are downloaded again
+        server.resetMappings();
+        server.stubFor(get(urlEqualTo(PATH))
+                .willReturn(aResponse().withStatus(200).withHeader("ETag", "\"2\"").withBody("second")));
+        expire();
+        assertEquals("second", read(cachedFile(false)));
+        assertEquals(3, server.getAllServeEvents().size());
+    }
+
+    @Test
+    void testIfModifiedSince() throws Exception {
+        server.stubFor(get(urlEqualTo(PATH)).willReturn(aResponse().withStatus(200)
+                .withHeader("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT").withBody("first")));
+        assertEquals("first", read(cachedFile(false)));
+
+        server.resetMappings();
+        server.stubFor(get(urlEqualTo(PATH)).willReturn(aResponse().withStatus(304)));
+        expire();
+        assertEquals("first", read(cachedFile(false)));
+        server.verify(1, getRequestedFor(urlEqualTo(PATH)).withHeader("If-Modified-Since",
+                equalTo("Wed, 21 Oct 2015 07:28:00 GMT")));
+    }
+
+    @Test
+    void testFailedRevalidation() throws Exception {
+        server.stubFor(get(urlEqualTo(PATH))
+                .willReturn(aResponse().withStatus(200).withHeader("ETag", "\"1\"").withBody("first")));
+        assertEquals("first", read(cachedFile(false)));
+
+        // The cached copy is used while the server fails
+        server.resetMappings();
+        server.stubFor(get(urlEqualTo(PATH)).willReturn(aResponse().withStatus(503)));
+        expire();
+        assertEquals("first", read(cachedFile(false)));
+        server.verify(getRequestedFor(urlEqualTo(PATH)).withHeader("If-None-Match", equalTo("\"1\"")));
+    }
+
+    @Test
+    void testCompressed() throws Exception {
+        server.stubFor(get(urlEqualTo(PATH)).willReturn(aResponse().withStatus(200).withBody("compressed")));
+        CachedFile cachedFile = cachedFile(true);
+        assertEquals("compressed", read(cachedFile));
+
+        File file = cachedFile.getFile();
+        assertTrue(file.getName().endsWith(".gz"));
+        byte[] content = Files.readAllBytes(file.toPath());
+        // The magic number of gzip files
+        assertEquals((byte) 0x1f, content[0]);
+        assertEquals((byte) 0x8b, content[1]);
+        server.verify(getRequestedFor(urlEqualTo(PATH)).withHeader("Accept-Encoding", equalTo("gzip")));
+    }
+}
@@ -0,0 +1,119 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import com.kaart.openqa.profiles.DownloadedErrors;
+import com.kaart.openqa.profiles.GenericInformation;
+import com.kaart.openqa.profiles.StubInformation;
+
+class ErrorLayerTest {
+    @RegisterExtension
+    static JOSMTestRules rule = new JOSMTestRules();
+
+    private static Node error(DataSet ds, String id, double lat, double lon, String title) {
+        Node node = new Node(new LatLon(lat, lon));
+        node.put(GenericInformation.ERROR_ID, id);
+        node.put("title", title);
+        ds.addPrimitive(node);
+        return node;
+    }
+
+    private static Node find(DataSet ds, String id) {
+        return ds.getNodes().stream().filter(node -> id.equals(node.get(GenericInformation.ERROR_ID))).findFirst()
+                .orElse(null);
+    }
+
+    @Test
+    void testMergeErrors() {
+        DataSet current = new DataSet();
+        Node unchanged = error(current, "1", 0.1, 0.1, "same");
+        Node changed = error(current, "2", 0.2, 0.2, "old");
+        error(current, "3", 0.3, 0.3, "gone");
+        Node handled = error(current, "4", 0.4, 0.4, "handled");
+        handled.put(ErrorLayer.ACTION_TAKEN, "true");
+        error(current, "5", 5, 5, "elsewhere");
+
+        DataSet downloaded = new DataSet();
+        error(downloaded, "1", 0.1, 0.1, "same");
+        error(downloaded, "2", 0.2, 0.2, "new");
+        error(downloaded, "6", 0.6, 0.6, "added");
+
+        assertTrue(ErrorLayer.mergeErrors(current, downloaded,
+                Collections.singletonList(new Bounds(0, 0, 1, 1))));
+
+        assertSame(unchanged, find(current, "1"));
+        assertSame(changed, find(current, "2"));
+        assertEquals("new", changed.get("title"));
+        assertNull(find(current, "3"));
+        assertSame(handled, find(current, "4"));
+        assertNotNull(find(current, "5"));
+        assertNotNull(find(current, "6"));
+        assertEquals(5, current.getNodes().size());
+        // Nothing changes when the same errors are merged again
+        assertFalse(ErrorLayer.mergeErrors(current, downloaded,
+                Collections.singletonList(new Bounds(0, 0, 1, 1))));
+    }
+
+    @Test
+    void testMergeErrorsRemovesTags() {
+        DataSet current = new DataSet();
+        Node node = error(current, "1", 0.1, 0.1, "same");
+        node.put("subtitle", "gone");
+        node.put("elems", "detail");
+        node.put(GenericInformation.ADDITIONAL_INFORMATION, "ADDITIONAL_INFORMATION;elems");
+
+        DataSet downloaded = new DataSet();
+        error(downloaded, "1", 0.1, 0.1, "same");
+
+        ErrorLayer.mergeErrors(current, downloaded,
+                Collections.singletonList(new Bounds(0, 0, 1, 1)));
+
+        assertNull(node.get("subtitle"));
+        assertEquals("same", node.get("title"));
+        assertEquals("detail", node.get("elems"));
+        assertEquals("ADDITIONAL_INFORMATION;elems", node.get(GenericInformation.ADDITIONAL_INFORMATION));
+    }
+
+    @Test
+    void testFailedDownloadKeepsErrors() {
+        Bounds failing = new Bounds(0, 0, 1, 1);
+        Bounds working = new Bounds(0, 1, 1, 2);
+        DataSet current = new DataSet();
+        error(current, "1", 0.5, 0.5, "kept");
+        error(current, "2", 0.5, 1.5, "gone");
+
+        GenericInformation type = new StubInformation(bound -> {
+            if (bound.equals(failing)) {
+                return null;
+            }
+            DataSet ds = new DataSet();
+            error(ds, "3", 0.6, 1.6, "new");
+            return ds;
+        }, Integer.MAX_VALUE);
+        DownloadedErrors errors = type.getErrors(Arrays.asList(failing, working), NullProgressMonitor.INSTANCE);
+        assertEquals(Collections.singletonList(working), errors.getCompleteBounds());
+
+        ErrorLayer.mergeErrors(current, errors.getDataSet(), errors.getCompleteBounds());
+        assertNotNull(find(current, "1"));
+        assertNull(find(current, "2"));
+        assertNotNull(find(current, "3"));
+    }
+}
@@ -0,0 +1,101 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import com.kaart.openqa.profiles.GenericInformation;
+
+class ErrorSnapshotTest {
+    @RegisterExtension
+    static JOSMTestRules rule = new JOSMTestRules();
+
+    @TempDir
+    File directory;
+
+    @Test
+    void testRoundTrip() throws IOException {
+        DataSet ds = new DataSet();
+        Node first = new Node(new LatLon(39.0837012, -108.5532156));
+        first.put(GenericInformation.ERROR_ID, "1");
+        first.put("title", "Unclosed way");
+        ds.addPrimitive(first);
+        Node second = new Node(42);
+        second.setCoor(new LatLon(-33.8688197, 151.2092955));
+        second.put(GenericInformation.ERROR_ID, "2");
+        second.put("title", "Unclosed way");
+        second.put(ErrorLayer.ACTION_TAKEN, "true");
+        ds.addPrimitive(second);
+
+        Map<Bounds, Long> covered = new HashMap<>();
+        covered.put(new Bounds(39, -109, 40, -108), System.currentTimeMillis());
+        covered.put(new Bounds(-34, 151, -33, 152), System.currentTimeMillis());
+        File file = new File(new File(directory, "snapshots"), "test.snapshot");
+        ErrorSnapshot.write(file, ds, covered);
+        Map<Bounds, Long> readCovered = new HashMap<>();
+        DataSet read = ErrorSnapshot.read(file, readCovered);
+
+        assertEquals(covered, readCovered);
+        assertEquals(2, read.getNodes().size());
+        for (Node node : ds.getNodes()) {
+            Node copy = read.getNodes().stream()
+                    .filter(n -> node.get(GenericInformation.ERROR_ID).equals(n.get(GenericInformation.ERROR_ID)))
+                    .findFirst().orElseThrow(AssertionError::new);
+            assertEquals(node.getKeys(), copy.getKeys());
+            assertTrue(node.getCoor().equalsEpsilon(copy.getCoor()));
+        }
+        assertEquals(1, read.getNodes().stream().filter(node -> node.getUniqueId() == 42).count());
+    }
+
+    @Test
+    void testExpiredAreas() throws IOException {
+        DataSet ds = new DataSet();
+        Node fresh = new Node(new LatLon(39.5, -108.5));
+        fresh.put(GenericInformation.ERROR_ID, "1");
+        ds.addPrimitive(fresh);
+        Node expired = new Node(new LatLon(-33.5, 151.5));
+        expired.put(GenericInformation.ERROR_ID, "2");
+        ds.addPrimitive(expired);
+        Node uncovered = new Node(new LatLon(10, 10));
+        uncovered.put(GenericInformation.ERROR_ID, "3");
+        ds.addPrimitive(uncovered);
+
+        Map<Bounds, Long> covered = new HashMap<>();
+        covered.put(new Bounds(39, -109, 40, -108), System.currentTimeMillis());
+        covered.put(new Bounds(-34, 151, -33, 152), 0L);
+        File file = new File(directory, "test.snapshot");
+        ErrorSnapshot.write(file, ds, covered);
+        Map<Bounds, Long> readCovered = new HashMap<>();
+        DataSet read = ErrorSnapshot.read(file, readCovered);
+
+        assertEquals(1, readCovered.size());
+        assertEquals(1, read.getNodes().size());
+        assertEquals("1", read.getNodes().iterator().next().get(GenericInformation.ERROR_ID));
+    }
+
+    @Test
+    void testUnreadable() throws IOException {
+        Map<Bounds, Long> covered = new HashMap<>();
+        assertTrue(ErrorSnapshot.read(new File(directory, "missing.snapshot"), covered).getNodes().isEmpty());
+        File file = new File(directory, "broken.snapshot");
+        Files.write(file.toPath(), "not a snapshot".getBytes(StandardCharsets.UTF_8));
+        assertTrue(ErrorSnapshot.read(file, covered).getNodes().isEmpty());
+        assertTrue(covered.isEmpty());
+    }
+}
@@ -0,0 +1,50 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+class GeoJsonReaderTest {
+    @RegisterExtension
+    static JOSMTestRules rule = new JOSMTestRules();
+
+    private static DataSet parse(String json) throws IllegalDataException {
+        return GeoJsonReader.parseDataSet(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    @Test
+    void testFeatureCollection() throws IllegalDataException {
+        DataSet ds = parse("{\"type\":\"FeatureCollection\",\"features\":["
+                + "{\"type\":\"Feature\",\"geometry\":{\"coordinates\":[1.5,2.5],\"type\":\"Point\"},"
+                + "\"properties\":{\"error_id\":\"42\",\"schema\":58,\"nested\":{\"a\":[1,2]}}},"
+                + "{\"type\":\"Feature\",\"properties\":{\"error_id\":\"43\"},"
+                + "\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[0,0],[1,1]]}},"
+                + "{\"type\":\"Feature\",\"geometry\":null,\"properties\":{\"error_id\":\"44\"}}]}");
+        assertEquals(1, ds.getWays().size());
+        assertEquals(3, ds.getNodes().size());
+        Node point = ds.getNodes().stream().filter(node -> "42".equals(node.get("error_id"))).findFirst()
+                .orElse(null);
+        assertNotNull(point);
+        assertEquals(2.5, point.lat(), 1e-9);
+        assertEquals(1.5, point.lon(), 1e-9);
+        assertEquals("58", point.get("schema"));
+        assertEquals(2, point.getKeys().size());
+        assertEquals("43", ds.getWays().iterator().next().get("error_id"));
+    }
+
+    @Test
+    void testBareGeometry() throws IllegalDataException {
+        DataSet ds = parse("{\"type\":\"MultiPoint\",\"coordinates\":[[1,2],[3,4]]}");
+        assertEquals(2, ds.getNodes().size());
+    }
+}
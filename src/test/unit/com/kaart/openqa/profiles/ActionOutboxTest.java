@@ -0,0 +1,164 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+class ActionOutboxTest {
+    @RegisterExtension
+    static JOSMTestRules rule = new JOSMTestRules();
+
+    @TempDir
+    File directory;
+
+    /** The tasks that were given to the executor, in order */
+    private final Deque<Runnable> tasks = new ArrayDeque<>();
+    /** The delays of the scheduled tasks, in seconds */
+    private final List<Long> delays = new ArrayList<>();
+    /** The URLs that were sent */
+    private final List<String> sent = new ArrayList<>();
+
+    /**
+     * @return An executor that only records its tasks, so that the test decides when they run
+     */
+    private ScheduledExecutorService recordingExecutor() {
+        return (ScheduledExecutorService) Proxy.newProxyInstance(ScheduledExecutorService.class.getClassLoader(),
+                new Class<?>[] {ScheduledExecutorService.class}, (proxy, method, args) -> {
+                    if ("execute".equals(method.getName())) {
+                        tasks.add((Runnable) args[0]);
+                    } else if ("schedule".equals(method.getName()) && args[0] instanceof Runnable) {
+                        tasks.add((Runnable) args[0]);
+                        delays.add(((TimeUnit) args[2]).toSeconds((Long) args[1]));
+                    } else {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return null;
+                });
+    }
+
+    private ActionOutbox outbox(ActionOutbox.Sender sender) {
+        return new ActionOutbox(new File(directory, ActionOutbox.FILE_NAME), recordingExecutor(), url -> {
+            sent.add(url);
+            return sender.send(url);
+        });
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+    }
+
+    private Properties stored() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream stream = Files.newInputStream(new File(directory, ActionOutbox.FILE_NAME).toPath())) {
+            properties.load(stream);
+        }
+        return properties;
+    }
+
+    @Test
+    void testCoalescing() {
+        ActionOutbox outbox = outbox(url -> 200);
+        outbox.send("osmose-1", "https://example.org/1/done");
+        outbox.send("osmose-2", "https://example.org/2/done");
+        outbox.send("osmose-1", "https://example.org/1/false");
+        // Nothing is sent or saved by the caller
+        assertTrue(sent.isEmpty());
+        assertFalse(new File(directory, ActionOutbox.FILE_NAME).exists());
+        // One save and one flush
+        assertEquals(2, tasks.size());
+
+        runTasks();
+        assertEquals(Arrays.asList("https://example.org/2/done", "https://example.org/1/false"), sent);
+        assertEquals(Collections.singletonList(0L), delays);
+        assertFalse(new File(directory, ActionOutbox.FILE_NAME).exists());
+    }
+
+    @Test
+    void testRetryBackoff() throws IOException {
+        int[] failures = {3};
+        ActionOutbox outbox = outbox(url -> {
+            if (failures[0]-- > 0) {
+                throw new IOException("Unreachable");
+            }
+            return 200;
+        });
+        outbox.send("osmose-1", "https://example.org/1/done");
+        // Save the change, then fail to send it
+        tasks.poll().run();
+        tasks.poll().run();
+        assertEquals("https://example.org/1/done", stored().getProperty("osmose-1"));
+
+        runTasks();
+        assertEquals(4, sent.size());
+        assertEquals(Arrays.asList(0L, 10L, 20L, 40L), delays);
+        assertFalse(new File(directory, ActionOutbox.FILE_NAME).exists());
+
+        assertEquals(ActionOutbox.MIN_RETRY_DELAY, ActionOutbox.getRetryDelay(1));
+        assertEquals(ActionOutbox.MAX_RETRY_DELAY, ActionOutbox.getRetryDelay(100));
+    }
+
+    @Test
+    void testServerErrorsAreRetried() {
+        int[] codes = {503, 429, 200};
+        int[] calls = {0};
+        ActionOutbox outbox = outbox(url -> codes[calls[0]++]);
+        outbox.send("osmose-1", "https://example.org/1/done");
+        runTasks();
+        assertEquals(3, sent.size());
+        assertEquals(Arrays.asList(0L, 10L, 20L), delays);
+    }
+
+    @Test
+    void testClientErrorsAreDropped() {
+        ActionOutbox outbox = outbox(url -> url.contains("/1/") ? 404 : 200);
+        outbox.send("osmose-1", "https://example.org/1/done");
+        outbox.send("osmose-2", "https://example.org/2/done");
+        runTasks();
+        assertEquals(Arrays.asList("https://example.org/1/done", "https://example.org/2/done"), sent);
+        // Nothing is retried
+        assertEquals(Collections.singletonList(0L), delays);
+        assertFalse(new File(directory, ActionOutbox.FILE_NAME).exists());
+        assertTrue(ActionOutbox.isRetried(500));
+        assertFalse(ActionOutbox.isRetried(404));
+    }
+
+    @Test
+    void testLoad() throws IOException {
+        ActionOutbox outbox = outbox(url -> {
+            throw new IOException("Unreachable");
+        });
+        outbox.send("keepright-1", "https://example.org/1/ignore");
+        tasks.poll().run();
+        tasks.clear();
+        delays.clear();
+
+        outbox(url -> 200).load();
+        runTasks();
+        assertEquals(Collections.singletonList("https://example.org/1/ignore"), sent);
+        assertEquals(Collections.singletonList(0L), delays);
+        assertFalse(new File(directory, ActionOutbox.FILE_NAME).exists());
+    }
+}
@@ -0,0 +1,125 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+class GenericInformationTest {
+    @RegisterExtension
+    static JOSMTestRules rule = new JOSMTestRules();
+
+    private static final List<Bounds> AREAS = Arrays.asList(new Bounds(0.01, 0.01, 0.02, 0.02),
+            new Bounds(0.01, 1.01, 0.02, 1.02), new Bounds(0.01, 2.01, 0.02, 2.02));
+
+    /**
+     * Get errors for an area
+     *
+     * @param bound The area
+     * @param count The number of errors
+     * @return A dataset with {@code count} errors in the middle of {@code bound}
+     */
+    private static DataSet errors(Bounds bound, int count) {
+        DataSet ds = new DataSet();
+        for (int i = 0; i < count; i++) {
+            Node node = new Node(bound.getCenter());
+            node.put(GenericInformation.ERROR_ID, bound.toString() + i);
+            ds.addPrimitive(node);
+        }
+        return ds;
+    }
+
+    /**
+     * @return A monitor that has been cancelled
+     */
+    private static ProgressMonitor cancelledMonitor() {
+        return (ProgressMonitor) Proxy.newProxyInstance(ProgressMonitor.class.getClassLoader(),
+                new Class<?>[] {ProgressMonitor.class}, (proxy, method, args) -> {
+                    if ("isCanceled".equals(method.getName())) {
+                        return true;
+                    } else if ("createSubTaskMonitor".equals(method.getName())) {
+                        return proxy;
+                    } else if (method.getReturnType() == boolean.class) {
+                        return false;
+                    } else if (method.getReturnType() == int.class) {
+                        return 0;
+                    }
+                    return null;
+                });
+    }
+
+    @Test
+    void testFailedAreas() {
+        // Areas west of 1 fail, areas between 1 and 2 throw, the others work
+        GenericInformation type = new StubInformation(bound -> {
+            double lon = bound.getCenter().lon();
+            if (lon < 1) {
+                return null;
+            } else if (lon < 2) {
+                throw new IllegalStateException("Broken download");
+            }
+            return errors(bound, 1);
+        }, Integer.MAX_VALUE);
+        List<Bounds> plan = type.getBounds(AREAS);
+        DownloadedErrors errors = type.getErrors(plan, NullProgressMonitor.INSTANCE);
+
+        assertFalse(errors.getCompleteBounds().isEmpty());
+        for (Bounds bound : errors.getCompleteBounds()) {
+            assertTrue(bound.getCenter().lon() >= 2);
+        }
+        assertEquals(errors.getCompleteBounds().size(), errors.getDataSet().getNodes().size());
+        // Only the areas that failed are downloaded again
+        List<Bounds> again = type.getBounds(AREAS);
+        assertFalse(again.isEmpty());
+        for (Bounds bound : again) {
+            assertTrue(bound.getCenter().lon() < 2);
+        }
+    }
+
+    @Test
+    void testTruncatedAreas() {
+        GenericInformation type = new StubInformation(bound -> errors(bound, 2), 2);
+        List<Bounds> plan = type.getBounds(AREAS);
+        DownloadedErrors errors = type.getErrors(plan, NullProgressMonitor.INSTANCE);
+
+        assertTrue(errors.getCompleteBounds().isEmpty());
+        assertEquals(plan.size() * 2, errors.getDataSet().getNodes().size());
+        assertEquals(new HashSet<>(plan), new HashSet<>(type.getBounds(AREAS)));
+    }
+
+    @Test
+    void testCancelled() {
+        GenericInformation type = new StubInformation(bound -> errors(bound, 1), Integer.MAX_VALUE);
+        List<Bounds> plan = type.getBounds(AREAS);
+        DownloadedErrors errors = type.getErrors(plan, cancelledMonitor());
+        type.markStale(plan);
+
+        assertTrue(errors.getCompleteBounds().isEmpty());
+        assertEquals(new HashSet<>(plan), new HashSet<>(type.getBounds(AREAS)));
+    }
+
+    @Test
+    void testNothingToDownload() {
+        GenericInformation type = new StubInformation(bound -> {
+            throw new AssertionError("Nothing should be downloaded");
+        }, Integer.MAX_VALUE);
+        DownloadedErrors errors = type.getErrors(Collections.emptyList(), NullProgressMonitor.INSTANCE);
+        assertTrue(errors.getCompleteBounds().isEmpty());
+        assertTrue(errors.getDataSet().getNodes().isEmpty());
+    }
+}
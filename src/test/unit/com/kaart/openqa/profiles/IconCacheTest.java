@@ -0,0 +1,43 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.image.BufferedImage;
+
+import javax.swing.ImageIcon;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.tools.ImageProvider.ImageSizes;
+
+class IconCacheTest {
+    private static ImageIcon newIcon() {
+        return new ImageIcon(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB));
+    }
+
+    @Test
+    void testHitsAndMisses() {
+        IconCache cache = new IconCache(10);
+        ImageIcon first = cache.get("KeepRight", "20", ImageSizes.LARGEICON, IconCacheTest::newIcon);
+        assertSame(first, cache.get("KeepRight", "20", ImageSizes.LARGEICON, IconCacheTest::newIcon));
+        assertNotSame(first, cache.get("KeepRight", "20", ImageSizes.SMALLICON, IconCacheTest::newIcon));
+        assertNotSame(first, cache.get("Osmose", "20", ImageSizes.LARGEICON, IconCacheTest::newIcon));
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    void testEviction() {
+        IconCache cache = new IconCache(2);
+        ImageIcon first = cache.get("KeepRight", "1", ImageSizes.LARGEICON, IconCacheTest::newIcon);
+        cache.get("KeepRight", "2", ImageSizes.LARGEICON, IconCacheTest::newIcon);
+        // Use the first icon, so the second one is the least recently used
+        cache.get("KeepRight", "1", ImageSizes.LARGEICON, IconCacheTest::newIcon);
+        cache.get("KeepRight", "3", ImageSizes.LARGEICON, IconCacheTest::newIcon);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertSame(first, cache.get("KeepRight", "1", ImageSizes.LARGEICON, IconCacheTest::newIcon));
+    }
+}
@@ -0,0 +1,110 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import javax.swing.JButton;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+
+/**
+ * A source that returns errors from a function instead of downloading them
+ */
+public class StubInformation extends GenericInformation {
+    private final Function<Bounds, DataSet> errors;
+    private final int resultLimit;
+
+    /**
+     * Create a new source
+     *
+     * @param errors      The function that returns the errors of an area. It may
+     *                    return {@code null} or throw to fail the download.
+     * @param resultLimit The maximum number of errors per area
+     */
+    public StubInformation(Function<Bounds, DataSet> errors, int resultLimit) {
+        super(null);
+        this.errors = errors;
+        this.resultLimit = resultLimit;
+    }
+
+    @Override
+    protected DataSet getGeoJsonErrors(Bounds bound) {
+        return errors.apply(bound);
+    }
+
+    @Override
+    protected int getResultLimit() {
+        return resultLimit;
+    }
+
+    @Override
+    protected void trimCache() {
+        // Nothing is cached
+    }
+
+    @Override
+    public String getName() {
+        return "Stub";
+    }
+
+    @Override
+    public String getBaseApi() {
+        return "";
+    }
+
+    @Override
+    public String getBaseImg() {
+        return "";
+    }
+
+    @Override
+    public String getBaseErrorUrl() {
+        return "";
+    }
+
+    @Override
+    public NavigableMap<String, String> getErrors() {
+        return new TreeMap<>();
+    }
+
+    @Override
+    public String buildDownloadErrorList() {
+        return "";
+    }
+
+    @Override
+    public List<String> buildDefaultPref() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String getNodeToolTip(Node node) {
+        return "";
+    }
+
+    @Override
+    public String getCacheDir() {
+        return null;
+    }
+
+    @Override
+    public String getLayerName() {
+        return "Stub Errors";
+    }
+
+    @Override
+    public String getError(Node node) {
+        return "";
+    }
+
+    @Override
+    public List<JButton> getActions(Node selectedNode) {
+        return Collections.emptyList();
+    }
+}
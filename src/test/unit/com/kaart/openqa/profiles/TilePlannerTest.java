@@ -0,0 +1,68 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.Bounds;
+
+class TilePlannerTest {
+    private static final String VARIANT = "1,2,3";
+
+    @Test
+    void testSmallAreaIsNotPadded() {
+        TilePlanner planner = new TilePlanner(0.1, 60_000);
+        Bounds area = new Bounds(39.0801, -108.5599, 39.0849, -108.5551);
+        List<Bounds> plan = planner.plan(Collections.singletonList(area), VARIANT);
+        double planned = plan.stream().mapToDouble(bound -> bound.getWidth() * bound.getHeight()).sum();
+        assertTrue(planned < 16 * area.getWidth() * area.getHeight());
+        assertTrue(plan.stream().allMatch(bound -> bound.getWidth() < 0.1));
+    }
+
+    @Test
+    void testFreshTilesAreSkipped() {
+        TilePlanner planner = new TilePlanner(0.1, 60_000);
+        Bounds area = new Bounds(39.05, -108.55, 39.12, -108.45);
+        List<Bounds> plan = planner.plan(Collections.singletonList(area), VARIANT);
+        plan.forEach(bound -> planner.markFresh(bound, VARIANT));
+        assertTrue(planner.plan(Collections.singletonList(area), VARIANT).isEmpty());
+        // A smaller area inside the downloaded tiles is fresh as well
+        Bounds inside = new Bounds(39.081, -108.51, 39.082, -108.509);
+        assertTrue(planner.plan(Collections.singletonList(inside), VARIANT).isEmpty());
+        // Another list of errors is not
+        assertEquals(plan, planner.plan(Collections.singletonList(area), "4"));
+    }
+
+    @Test
+    void testCancelledTilesAreNotMarkedFresh() {
+        TilePlanner planner = new TilePlanner(0.1, 60_000);
+        Bounds area = new Bounds(39.05, -108.55, 39.12, -108.45);
+        List<Bounds> plan = planner.plan(Collections.singletonList(area), VARIANT);
+        planner.markStale(plan);
+        plan.forEach(bound -> planner.markFresh(bound, VARIANT));
+        assertEquals(plan, planner.plan(Collections.singletonList(area), VARIANT));
+    }
+
+    @Test
+    void testOversizedAreasAreMarkedFresh() {
+        TilePlanner planner = new TilePlanner(0.1, 60_000);
+        Bounds area = new Bounds(30, -110, 40, -100);
+        List<Bounds> plan = planner.plan(Collections.singletonList(area), VARIANT);
+        assertEquals(Collections.singletonList(area), plan);
+        planner.markFresh(area, VARIANT);
+        assertTrue(planner.plan(Collections.singletonList(area), VARIANT).isEmpty());
+    }
+
+    @Test
+    void testExpiredTilesArePlannedAgain() {
+        TilePlanner planner = new TilePlanner(0.1, 0);
+        Bounds area = new Bounds(39.05, -108.55, 39.12, -108.45);
+        List<Bounds> plan = planner.plan(Collections.singletonList(area), VARIANT);
+        plan.forEach(bound -> planner.markFresh(bound, VARIANT));
+        assertEquals(plan, planner.plan(Collections.singletonList(area), VARIANT));
+    }
+}